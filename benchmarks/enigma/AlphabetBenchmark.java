@@ -0,0 +1,61 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static enigma.BenchmarkMachines.*;
+
+/** Benchmarks of Alphabet lookups, over the upper-case alphabet and over
+ *  one spread across Unicode. Some of the probes are absent.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(PROBES)
+public class AlphabetBenchmark {
+
+    /** The characters of the alphabet benchmarked. */
+    @Param({"ABCDEFGHIJKLMNOPQRSTUVWXYZ", "A\u00e9\u03a9\u4e2d\uac00\uffee~"})
+    public String chars;
+
+    /** Builds the alphabet and its probes. */
+    @Setup
+    public void setUp() {
+        _alphabet = new Alphabet(chars);
+        _probes = randomText(chars + "*()0\u4e2e\u0000", PROBES);
+    }
+
+    /** Measures Alphabet.toInt. */
+    @Benchmark
+    public void toInt(Blackhole hole) {
+        for (char ch : _probes) {
+            hole.consume(_alphabet.toInt(ch));
+        }
+    }
+
+    /** Measures Alphabet.contains. */
+    @Benchmark
+    public void contains(Blackhole hole) {
+        for (char ch : _probes) {
+            hole.consume(_alphabet.contains(ch));
+        }
+    }
+
+    /** The alphabet benchmarked. */
+    private Alphabet _alphabet;
+
+    /** The characters looked up. */
+    private char[] _probes;
+
+}
@@ -0,0 +1,66 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** Machines and inputs shared by the benchmarks.
+ *  @author Evelyn Vo
+ */
+final class BenchmarkMachines {
+
+    /** Not instantiable. */
+    private BenchmarkMachines() {
+    }
+
+    /** Returns the machine of exampleNaval.in: rotors B, Beta, III, IV
+     *  and I of the naval set at AXLE, with plugboard (HQ) (EX) (IP) (TR)
+     *  (BY). */
+    static Machine naval() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        String[][] moving = {{"I", "Q"}, {"III", "V"}, {"IV", "J"}};
+        for (String[] rotor : moving) {
+            rotors.add(new MovingRotor(rotor[0],
+                    new Permutation(NAVALA.get(rotor[0]), UPPER), rotor[1]));
+        }
+        Machine mach = new Machine(UPPER, 5, 3, rotors);
+        mach.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        mach.setRotors("AXLE");
+        mach.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                          UPPER));
+        return mach;
+    }
+
+    /** Returns LENGTH characters drawn at random from CHARS. */
+    static char[] randomText(String chars, int length) {
+        Random random = new Random(SEED);
+        char[] text = new char[length];
+        for (int index = 0; index < length; index += 1) {
+            text[index] = chars.charAt(random.nextInt(chars.length()));
+        }
+        return text;
+    }
+
+    /** Returns LENGTH indices drawn at random from 0 .. SIZE - 1. */
+    static int[] randomIndices(int size, int length) {
+        Random random = new Random(SEED);
+        int[] indices = new int[length];
+        for (int index = 0; index < length; index += 1) {
+            indices[index] = random.nextInt(size);
+        }
+        return indices;
+    }
+
+    /** The number of probes each lookup benchmark makes per operation. */
+    static final int PROBES = 1024;
+
+    /** Seed for random inputs, so that every run measures the same
+     *  work. */
+    private static final long SEED = 61;
+
+}
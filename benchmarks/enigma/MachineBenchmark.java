@@ -0,0 +1,72 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static enigma.BenchmarkMachines.*;
+import static enigma.TestUtils.*;
+
+/** Benchmarks of converting whole messages of 1 KB, 1 MB and 100 MB of
+ *  random letters on the naval machine. The machine is not reset between
+ *  operations, so each converts from wherever the last left the rotors.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class MachineBenchmark {
+
+    /** The number of characters in the message. */
+    @Param({"1024", "1048576", "104857600"})
+    public int length;
+
+    /** Builds the machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = naval();
+        _in = randomText(UPPER_STRING, length);
+        _out = new char[length];
+        _message = new String(_in);
+    }
+
+    /** Measures Machine.convert(String). */
+    @Benchmark
+    public String convertString() {
+        return _machine.convert(_message);
+    }
+
+    /** Measures Machine.convert(char[], int, int, char[], int), which
+     *  converts without allocating. */
+    @Benchmark
+    public char[] convertChars() {
+        _machine.convert(_in, 0, length, _out, 0);
+        return _out;
+    }
+
+    /** The machine benchmarked. */
+    private Machine _machine;
+
+    /** The message as a String. */
+    private String _message;
+
+    /** The message as characters. */
+    private char[] _in;
+
+    /** Buffer for the converted message. */
+    private char[] _out;
+
+}
@@ -0,0 +1,70 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/** End-to-end benchmarks of Main, run as the integration tests run it on
+ *  inputs from testing/correct: reading the configuration, setting up
+ *  the machine and converting every message into a file. The directory
+ *  of inputs is the system property enigma.testing, by default
+ *  ../testing/correct.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MainBenchmark {
+
+    /** The name of the input, without its .in suffix. Its configuration
+     *  is NAME.conf if that exists and default.conf otherwise. */
+    @Param({"exampleNaval", "04-carroll", "01-reduced", "trivial1"})
+    public String input;
+
+    /** Finds the files to run on. */
+    @Setup
+    public void setUp() throws IOException {
+        File dir = new File(System.getProperty("enigma.testing",
+                                               "../testing/correct"));
+        File in = new File(dir, input + ".in");
+        File conf = new File(dir, input + ".conf");
+        if (!conf.exists()) {
+            conf = new File(dir, "default.conf");
+        }
+        if (!in.exists() || !conf.exists()) {
+            throw new IOException("no input " + in);
+        }
+        _out = File.createTempFile("enigma", ".out");
+        _args = new String[] {conf.getPath(), in.getPath(), _out.getPath()};
+    }
+
+    /** Removes the output file. */
+    @TearDown
+    public void tearDown() {
+        _out.delete();
+    }
+
+    /** Measures a complete run of Main. */
+    @Benchmark
+    public void run() {
+        Main.main(_args);
+    }
+
+    /** The arguments to Main. */
+    private String[] _args;
+
+    /** The output file. */
+    private File _out;
+
+}
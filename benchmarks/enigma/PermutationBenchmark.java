@@ -0,0 +1,58 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static enigma.BenchmarkMachines.*;
+import static enigma.TestUtils.*;
+
+/** Benchmarks of Permutation.permute and invert on rotor I of the naval
+ *  set, over indices that may fall outside the alphabet and need
+ *  wrapping.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(PROBES)
+public class PermutationBenchmark {
+
+    /** Builds the permutation and its probes. */
+    @Setup
+    public void setUp() {
+        _perm = new Permutation(NAVALA.get("I"), UPPER);
+        _probes = randomIndices(2 * _perm.size(), PROBES);
+    }
+
+    /** Measures Permutation.permute. */
+    @Benchmark
+    public void permute(Blackhole hole) {
+        for (int p : _probes) {
+            hole.consume(_perm.permute(p));
+        }
+    }
+
+    /** Measures Permutation.invert. */
+    @Benchmark
+    public void invert(Blackhole hole) {
+        for (int c : _probes) {
+            hole.consume(_perm.invert(c));
+        }
+    }
+
+    /** The permutation benchmarked. */
+    private Permutation _perm;
+
+    /** The indices permuted. */
+    private int[] _probes;
+
+}
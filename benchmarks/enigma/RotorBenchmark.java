@@ -0,0 +1,67 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static enigma.BenchmarkMachines.*;
+import static enigma.TestUtils.*;
+
+/** Benchmarks of Rotor.convertForward and convertBackward on rotor III of
+ *  the naval set, with and without compiled tables (see Rotor.compile).
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(PROBES)
+public class RotorBenchmark {
+
+    /** True iff the rotor is compiled. */
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    /** Builds the rotor and its probes. */
+    @Setup
+    public void setUp() {
+        _rotor = new MovingRotor("III", new Permutation(NAVALA.get("III"),
+                                                        UPPER), "V");
+        _rotor.set(7);
+        if (compiled) {
+            _rotor.compile();
+        }
+        _probes = randomIndices(_rotor.size(), PROBES);
+    }
+
+    /** Measures Rotor.convertForward. */
+    @Benchmark
+    public void convertForward(Blackhole hole) {
+        for (int p : _probes) {
+            hole.consume(_rotor.convertForward(p));
+        }
+    }
+
+    /** Measures Rotor.convertBackward. */
+    @Benchmark
+    public void convertBackward(Blackhole hole) {
+        for (int e : _probes) {
+            hole.consume(_rotor.convertBackward(e));
+        }
+    }
+
+    /** The rotor benchmarked. */
+    private Rotor _rotor;
+
+    /** The contacts converted. */
+    private int[] _probes;
+
+}
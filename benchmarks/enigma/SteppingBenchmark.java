@@ -0,0 +1,48 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static enigma.BenchmarkMachines.*;
+
+/** Benchmarks of stepping the rotors of the naval machine, one
+ *  keystroke at a time and by seeking.
+ *  @author Evelyn Vo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SteppingBenchmark {
+
+    /** Builds the machine. */
+    @Setup
+    public void setUp() {
+        _machine = naval();
+    }
+
+    /** Measures Machine.advanceMachine. */
+    @Benchmark
+    public void advanceMachine() {
+        _machine.advanceMachine();
+    }
+
+    /** Measures Machine.seek over a billion keystrokes. */
+    @Benchmark
+    public void seek() {
+        _machine.seek(SEEK_DISTANCE);
+    }
+
+    /** The distance each seek covers. */
+    private static final long SEEK_DISTANCE = 1_000_000_007L;
+
+    /** The machine benchmarked. */
+    private Machine _machine;
+
+}
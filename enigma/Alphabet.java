@@ -1,6 +1,7 @@
 package enigma;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
  *  to and from indices into the alphabet.
@@ -29,6 +30,79 @@ class Alphabet {
             _alph[index] = uniqueLetters.get(index);
         }
         _strAlph = chars;
+        buildIndex();
+    }
+
+    /** Builds the reverse index from characters to their positions in
+     *  _alph. Alphabets whose characters span a small range get a dense
+     *  table indexed by (ch - _base); sparse Unicode alphabets get an
+     *  open-addressing table with linear probing. */
+    private void buildIndex() {
+        if (_alph.length == 0) {
+            _dense = new int[0];
+            return;
+        }
+        char lo = _alph[0], hi = _alph[0];
+        for (char ch : _alph) {
+            lo = (char) Math.min(lo, ch);
+            hi = (char) Math.max(hi, ch);
+        }
+        int span = hi - lo + 1;
+        if (span <= MAX_DENSE_SPAN || span <= DENSE_RATIO * _alph.length) {
+            _base = lo;
+            _dense = new int[span];
+            Arrays.fill(_dense, -1);
+            for (int index = 0; index < _alph.length; index += 1) {
+                _dense[_alph[index] - lo] = index;
+            }
+        } else {
+            int capacity = Integer.highestOneBit(_alph.length * 2 + 1) << 1;
+            _keys = new char[capacity];
+            _vals = new int[capacity];
+            Arrays.fill(_vals, -1);
+            for (int index = 0; index < _alph.length; index += 1) {
+                int slot = hash(_alph[index]) & (capacity - 1);
+                while (_vals[slot] != -1) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                _keys[slot] = _alph[index];
+                _vals[slot] = index;
+            }
+        }
+    }
+
+    /** Returns a well-mixed hash of CH for the open-addressing table. */
+    private static int hash(char ch) {
+        int h = ch * 0x9E3779B1;
+        return h ^ (h >>> 16);
+    }
+
+    /** An alphabet of the characters LETTERS, whose string form is
+     *  CHARS, trusted to be distinct. */
+    private Alphabet(char[] letters, String chars) {
+        _alph = letters;
+        _strAlph = chars;
+        buildIndex();
+    }
+
+    /** Returns the alphabet of CHARS without checking it, which must
+     *  already have been done: CHARS must be distinct characters none of
+     *  which is whitespace, such as the toString() of another alphabet. */
+    static Alphabet trusted(String chars) {
+        return new Alphabet(chars.toCharArray(), chars);
+    }
+
+    /** Returns the alphabet of the 256 characters whose values are 0 to
+     *  255, in which each character's index is its value, so that the
+     *  character with index K may stand for the byte whose unsigned value
+     *  is K, as Machine's byte conversions require. Unlike the alphabets
+     *  of configuration files, it includes whitespace. */
+    static Alphabet bytes() {
+        char[] letters = new char[Machine.BYTE_VALUES];
+        for (int index = 0; index < letters.length; index += 1) {
+            letters[index] = (char) index;
+        }
+        return new Alphabet(letters, new String(letters));
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -43,10 +117,10 @@ class Alphabet {
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        if (_strAlph.indexOf(ch) == -1) {
-            return false;
+        if (toInt(ch) != -1) {
+            return true;
         }
-        return true;
+        return Character.isWhitespace(ch) && _strAlph.indexOf(ch) != -1;
     }
 
     /** Returns character number INDEX in the alphabet, where
@@ -62,7 +136,42 @@ class Alphabet {
      *  the alphabet. This is the inverse of toChar().
      *  Returns -1 if not found. */
     int toInt(char ch) {
-        return (new String(_alph)).indexOf(ch);
+        if (_dense != null) {
+            int offset = ch - _base;
+            if (offset < 0 || offset >= _dense.length) {
+                return -1;
+            }
+            return _dense[offset];
+        }
+        int mask = _keys.length - 1;
+        int slot = hash(ch) & mask;
+        while (_vals[slot] != -1) {
+            if (_keys[slot] == ch) {
+                return _vals[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Returns the indices of the characters of TEXT, in order, skipping
+     *  whitespace that is not in the alphabet. Throws an EnigmaException
+     *  at any other character not in the alphabet. */
+    int[] toInts(String text) {
+        int[] indices = new int[text.length()];
+        int count = 0;
+        for (int index = 0; index < text.length(); index += 1) {
+            char ch = text.charAt(index);
+            int letter = toInt(ch);
+            if (letter != -1) {
+                indices[count] = letter;
+                count += 1;
+            } else if (!Character.isWhitespace(ch)) {
+                throw new EnigmaException("Character " + ch + " is not in "
+                                          + "the alphabet.");
+            }
+        }
+        return Arrays.copyOf(indices, count);
     }
 
     @Override
@@ -91,4 +200,24 @@ class Alphabet {
     /** The String form of the alphabet. */
     private String _strAlph;
 
+    /** Largest character span always given a dense index. */
+    private static final int MAX_DENSE_SPAN = 256;
+
+    /** Sparse alphabets still get a dense index while their span is at
+     *  most this many times their size. */
+    private static final int DENSE_RATIO = 8;
+
+    /** The smallest character in the alphabet; offset of _dense. */
+    private char _base;
+
+    /** Dense reverse index: _dense[ch - _base] is the index of CH, or -1.
+     *  Null when the sparse table is in use. */
+    private int[] _dense;
+
+    /** Keys of the open-addressing reverse index. */
+    private char[] _keys;
+
+    /** Values of the open-addressing reverse index; -1 marks empty. */
+    private int[] _vals;
+
 }
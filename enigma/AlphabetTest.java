@@ -0,0 +1,83 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Evelyn Vo
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Checks that toInt and toChar are inverses over every character of
+     *  ALPHA, whose characters are CHARS, and that characters in MISSING
+     *  are reported as absent. TESTID is used in error messages. */
+    private void checkIndex(String testId, Alphabet alpha, String chars,
+                            String missing) {
+        assertEquals(testId + " (wrong size)", chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertEquals(msg(testId, "wrong index of '%c'", c),
+                    i, alpha.toInt(c));
+            assertEquals(msg(testId, "wrong char at %d", i),
+                    c, alpha.toChar(i));
+            assertTrue(msg(testId, "missing '%c'", c), alpha.contains(c));
+        }
+        for (char c : missing.toCharArray()) {
+            assertEquals(msg(testId, "found absent '%c'", c),
+                    -1, alpha.toInt(c));
+            assertFalse(msg(testId, "contains absent '%c'", c),
+                    alpha.contains(c));
+        }
+    }
+
+    /** Checks the reverse index of small, ASCII alphabets. */
+    @Test
+    public void testDenseIndex() {
+        checkIndex("upper", UPPER, UPPER_STRING, "az0*(\u00e9\u4e2d");
+        String mixed = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+                + "abcdefghijklmnopqrstuvwxyz_.";
+        checkIndex("mixed", new Alphabet(mixed), mixed, "*()0 ");
+        checkIndex("reduced", new Alphabet("HIJKLMNOPQ"), "HIJKLMNOPQ",
+                "GRA");
+    }
+
+    /** Checks the reverse index of alphabets spread over Unicode. */
+    @Test
+    public void testSparseIndex() {
+        String sparse = "A\u00e9\u03a9\u4e2d\uac00\uffee~";
+        checkIndex("sparse", new Alphabet(sparse), sparse,
+                "BZ\u03a8\u4e2e\uffef\u0000");
+    }
+
+    /** Checks that toInts gives the index of each character, skipping
+     *  whitespace only when it is not in the alphabet. */
+    @Test
+    public void testToInts() {
+        assertArrayEquals(new int[] {7, 8, 0, 25},
+                          UPPER.toInts(" HI\tA\nZ "));
+        assertArrayEquals(new int[] {32, 65},
+                          Alphabet.bytes().toInts(" A"));
+        assertArrayEquals(new int[0], UPPER.toInts(""));
+    }
+
+    /** Checks that toInts refuses a character not in the alphabet. */
+    @Test(expected = EnigmaException.class)
+    public void testToIntsMissing() {
+        UPPER.toInts("AB c");
+    }
+
+    /** Checks that duplicate characters are rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testDuplicates() {
+        new Alphabet("AB\u4e2dA");
+    }
+
+}
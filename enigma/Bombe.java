@@ -0,0 +1,389 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** A simulated Turing bombe, which finds the rotor orders, settings and
+ *  plugboard pairs under which a ciphertext may decrypt to a crib at a
+ *  known place, without trying plugboards one by one.
+ *
+ *  The crib and the ciphertext under it form a menu: a graph on the
+ *  letters in which crib letter P and ciphertext letter C at the Kth
+ *  place of the crib are joined by an edge labelled K. If the plugboard
+ *  is S and the rotors apply the permutation Z_K at that keystroke, then
+ *  S(C) = Z_K(S(P)), so a hypothesis about the partner of one letter
+ *  implies the partners of every letter it is joined to, and so on
+ *  through the menu. For each rotor order and each setting of the
+ *  rotors, the bombe tries each partner of the letter with the most
+ *  edges, its test letter, propagating the hypothesis through the menu
+ *  and abandoning it as soon as a letter is implied to have two partners
+ *  (the plugboard being an involution, a hypothesis that a is paired
+ *  with b also pairs b with a). A hypothesis that survives, and so
+ *  satisfies every crib letter in the part of the menu joined to the
+ *  test letter, is a stop, and gives the plugboard pairs it implies.
+ *
+ *  A stop is then checked against the other parts of the menu. Each
+ *  must have some partner for its letter with the most edges that
+ *  propagates through it without contradicting the pairs found so far.
+ *  A part where only one partner does adds the pairs it implies to the
+ *  stop. As for KeySearch, ring settings are not searched separately,
+ *  since they only offset the rotor settings. Rotor orders are tried in
+ *  parallel.
+ *  @author Evelyn Vo
+ */
+final class Bombe {
+
+    /** A setting of the rotors at which the bombe stopped. */
+    static final class Stop {
+
+        /** A stop with the rotors ROTORS, reflector first, at the settings
+         *  SETTINGS, implying the plugboard cycles PLUGBOARD, which is
+         *  empty if every letter of the menu is paired with itself. */
+        Stop(String[] rotors, String settings, String plugboard) {
+            _rotors = rotors.clone();
+            _settings = settings;
+            _plugboard = plugboard;
+        }
+
+        /** Returns the rotor settings, in the form taken by
+         *  Machine.setRotors. */
+        String settings() {
+            return _settings;
+        }
+
+        /** Returns the implied plugboard pairs, as cycles. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Returns a settings line for this stop. */
+        @Override
+        public String toString() {
+            String line = "* " + String.join(" ", _rotors) + " " + _settings;
+            return _plugboard.isEmpty() ? line : line + " " + _plugboard;
+        }
+
+        /** The rotors, reflector first. */
+        private final String[] _rotors;
+
+        /** The settings of all but the reflector. */
+        private final String _settings;
+
+        /** The plugboard cycles. */
+        private final String _plugboard;
+    }
+
+    /** A bombe for the rotors available to M, which is configured but has
+     *  no rotors inserted, seeking the settings under which the letters of
+     *  CIPHERTEXT from OFFSET on decrypt to CRIB. Whitespace in
+     *  CIPHERTEXT and CRIB is ignored, and OFFSET counts letters. */
+    Bombe(Machine M, String ciphertext, String crib, int offset) {
+        _machine = M;
+        _alphabet = M.alphabet();
+        _cipher = _alphabet.toInts(ciphertext);
+        _crib = _alphabet.toInts(crib);
+        _offset = offset;
+        if (_crib.length == 0) {
+            throw new EnigmaException("The crib is empty.");
+        } else if (offset < 0 || offset + _crib.length > _cipher.length) {
+            throw new EnigmaException("The crib does not fit in the "
+                                      + "ciphertext.");
+        }
+        for (int k = 0; k < _crib.length; k += 1) {
+            if (_crib[k] == _cipher[offset + k]) {
+                throw new EnigmaException("The crib cannot be at letter "
+                                          + offset + ": its letter " + k
+                                          + " would encrypt to itself.");
+            }
+        }
+        buildMenu();
+    }
+
+    /** Builds the menu: for each letter, the letters it is joined to and
+     *  the crib places of the edges joining them, the test letter, and
+     *  the letter with the most edges in each other part of the menu. */
+    private void buildMenu() {
+        int n = _alphabet.size();
+        int[] degree = new int[n];
+        for (int k = 0; k < _crib.length; k += 1) {
+            degree[_crib[k]] += 1;
+            degree[_cipher[_offset + k]] += 1;
+        }
+        _edgeTo = new int[n][];
+        _edgePlace = new int[n][];
+        for (int letter = 0; letter < n; letter += 1) {
+            _edgeTo[letter] = new int[degree[letter]];
+            _edgePlace[letter] = new int[degree[letter]];
+        }
+        int[] filled = new int[n];
+        for (int k = 0; k < _crib.length; k += 1) {
+            int p = _crib[k];
+            int c = _cipher[_offset + k];
+            _edgeTo[p][filled[p]] = c;
+            _edgePlace[p][filled[p]] = k;
+            filled[p] += 1;
+            _edgeTo[c][filled[c]] = p;
+            _edgePlace[c][filled[c]] = k;
+            filled[c] += 1;
+        }
+        _testLetter = 0;
+        for (int letter = 1; letter < n; letter += 1) {
+            if (degree[letter] > degree[_testLetter]) {
+                _testLetter = letter;
+            }
+        }
+        boolean[] reached = new boolean[n];
+        reach(_testLetter, reached);
+        int[] hubs = new int[n];
+        int count = 0;
+        for (int letter = 0; letter < n; letter += 1) {
+            if (degree[letter] > 0 && !reached[letter]) {
+                hubs[count] = reach(letter, reached);
+                count += 1;
+            }
+        }
+        _otherHubs = Arrays.copyOf(hubs, count);
+    }
+
+    /** Marks in REACHED the letters of the part of the menu joined to
+     *  LETTER, and returns the one with the most edges. */
+    private int reach(int letter, boolean[] reached) {
+        int hub = letter;
+        int[] stack = new int[reached.length];
+        int top = 0;
+        stack[top] = letter;
+        top += 1;
+        reached[letter] = true;
+        while (top > 0) {
+            top -= 1;
+            int next = stack[top];
+            if (_edgeTo[next].length > _edgeTo[hub].length) {
+                hub = next;
+            }
+            for (int to : _edgeTo[next]) {
+                if (!reached[to]) {
+                    reached[to] = true;
+                    stack[top] = to;
+                    top += 1;
+                }
+            }
+        }
+        return hub;
+    }
+
+    /** Runs the bombe over every valid rotor order (see
+     *  KeySearch.rotorOrders), on the threads of POOL, and returns the
+     *  stops that pass the check with a Machine, in order of rotor order
+     *  and then of settings. Reports the number of rotor settings tried
+     *  and the time taken through trials() and nanos(). */
+    List<Stop> run(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        List<String[]> orders =
+            KeySearch.rotorOrders(_machine.availableRotors(),
+                                  _machine.numRotors(), _machine.numPawls());
+        ArrayList<ForkJoinTask<List<Stop>>> tasks = new ArrayList<>();
+        for (String[] order : orders) {
+            tasks.add(pool.submit(() -> runOrder(order)));
+        }
+        ArrayList<Stop> stops = new ArrayList<>();
+        for (ForkJoinTask<List<Stop>> task : tasks) {
+            stops.addAll(task.join());
+        }
+        long perOrder = 1;
+        for (int slot = 1; slot < _machine.numRotors(); slot += 1) {
+            perOrder = Math.multiplyExact(perOrder, _alphabet.size());
+        }
+        _trials = Math.multiplyExact(perOrder, orders.size());
+        _nanos = System.nanoTime() - start;
+        return stops;
+    }
+
+    /** Returns the stops of the rotor order ORDER that pass the check. */
+    private List<Stop> runOrder(String[] order) {
+        int n = _alphabet.size();
+        int slots = order.length;
+        MachineSpec spec = new MachineSpec(_alphabet, _machine.numPawls(),
+                                           _machine.availableRotors(),
+                                           order, "", null);
+        int[][] scramblers = new int[_crib.length][n];
+        int[] partners = new int[n];
+        int[] trial = new int[n];
+        int[] found = new int[n];
+        int[] queue = new int[2 * n];
+        int[] start = new int[slots];
+        MachineState state = new MachineState(start);
+        int[] pos = state.positions();
+        ArrayList<Stop> stops = new ArrayList<>();
+        while (true) {
+            System.arraycopy(start, 0, pos, 0, slots);
+            if (_offset > 0) {
+                spec.seek(state, _offset);
+            }
+            for (int k = 0; k < _crib.length; k += 1) {
+                spec.scrambler(state, scramblers[k]);
+            }
+            for (int partner = 0; partner < n; partner += 1) {
+                Arrays.fill(partners, -1);
+                if (propagate(_testLetter, partner, scramblers, partners,
+                              queue)
+                    && check(scramblers, partners, trial, found, queue)) {
+                    stops.add(stop(order, start, partners));
+                }
+            }
+            int slot = slots - 1;
+            while (slot > 0 && start[slot] == n - 1) {
+                start[slot] = 0;
+                slot -= 1;
+            }
+            if (slot == 0) {
+                return stops;
+            }
+            start[slot] += 1;
+        }
+    }
+
+    /** Propagates the hypothesis that LETTER is paired with PARTNER
+     *  through the menu, where SCRAMBLERS[k] is the permutation of the
+     *  rotors at the Kth place of the crib. PARTNERS[a] is the partner
+     *  already implied for letter A, or -1 if there is none, and the
+     *  partners newly implied are added to it, using QUEUE, which has
+     *  room for two entries per letter, as scratch. Returns false as soon
+     *  as a letter is implied to have two partners. */
+    private boolean propagate(int letter, int partner, int[][] scramblers,
+                              int[] partners, int[] queue) {
+        int tail = pair(letter, partner, partners, queue, 0);
+        for (int head = 0; head < tail; head += 2) {
+            int from = queue[head];
+            int value = queue[head + 1];
+            int[] to = _edgeTo[from];
+            int[] place = _edgePlace[from];
+            for (int e = 0; e < to.length && tail >= 0; e += 1) {
+                tail = pair(to[e], scramblers[place[e]][value], partners,
+                            queue, tail);
+            }
+        }
+        return tail >= 0;
+    }
+
+    /** Records in PARTNERS that letters A and B are paired, adding each
+     *  newly implied pairing to QUEUE at TAIL. Returns the new tail of
+     *  QUEUE, or -1 if A or B already has another partner. */
+    private static int pair(int a, int b, int[] partners, int[] queue,
+                            int tail) {
+        if (partners[a] == b) {
+            return tail;
+        } else if (partners[a] != -1 || partners[b] != -1) {
+            return -1;
+        }
+        partners[a] = b;
+        partners[b] = a;
+        queue[tail] = a;
+        queue[tail + 1] = b;
+        tail += 2;
+        if (a != b) {
+            queue[tail] = b;
+            queue[tail + 1] = a;
+            tail += 2;
+        }
+        return tail;
+    }
+
+    /** Returns true iff each part of the menu not joined to my test
+     *  letter has a partner for its letter with the most edges that
+     *  propagates through it, under SCRAMBLERS, without contradicting
+     *  PARTNERS. Adds to PARTNERS the partners implied by each part that
+     *  has only one such partner. Uses TRIAL, FOUND and QUEUE as
+     *  scratch. */
+    private boolean check(int[][] scramblers, int[] partners, int[] trial,
+                          int[] found, int[] queue) {
+        int n = partners.length;
+        for (int hub : _otherHubs) {
+            int survivors = 0;
+            for (int partner = 0; partner < n && survivors < 2;
+                 partner += 1) {
+                System.arraycopy(partners, 0, trial, 0, n);
+                if (propagate(hub, partner, scramblers, trial, queue)) {
+                    survivors += 1;
+                    System.arraycopy(trial, 0, found, 0, n);
+                }
+            }
+            if (survivors == 0) {
+                return false;
+            } else if (survivors == 1) {
+                System.arraycopy(found, 0, partners, 0, n);
+            }
+        }
+        return true;
+    }
+
+    /** Returns the stop of the rotor order ORDER at the settings START
+     *  whose implied partners are PARTNERS. */
+    private Stop stop(String[] order, int[] start, int[] partners) {
+        char[] settings = new char[start.length - 1];
+        for (int slot = 1; slot < start.length; slot += 1) {
+            settings[slot - 1] = _alphabet.toChar(start[slot]);
+        }
+        StringBuilder cycles = new StringBuilder();
+        for (int letter = 0; letter < partners.length; letter += 1) {
+            int partner = partners[letter];
+            if (letter < partner) {
+                if (cycles.length() > 0) {
+                    cycles.append(' ');
+                }
+                cycles.append('(').append(_alphabet.toChar(letter))
+                    .append(_alphabet.toChar(partner)).append(')');
+            }
+        }
+        return new Stop(order, new String(settings), cycles.toString());
+    }
+
+    /** Returns the number of rotor settings tried by the last run. */
+    long trials() {
+        return _trials;
+    }
+
+    /** Returns the time taken by the last run, in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** The machine whose rotors are searched. */
+    private final Machine _machine;
+
+    /** Its alphabet. */
+    private final Alphabet _alphabet;
+
+    /** The letters of the ciphertext. */
+    private final int[] _cipher;
+
+    /** The letters of the crib. */
+    private final int[] _crib;
+
+    /** The number of letters of ciphertext before the crib. */
+    private final int _offset;
+
+    /** _edgeTo[a] holds the letters joined to letter A in the menu. */
+    private int[][] _edgeTo;
+
+    /** _edgePlace[a][e] is the place in the crib of the edge joining A
+     *  to _edgeTo[a][e]. */
+    private int[][] _edgePlace;
+
+    /** The letter with the most edges, whose partner is hypothesized. */
+    private int _testLetter;
+
+    /** The letter with the most edges in each part of the menu not joined
+     *  to _testLetter. */
+    private int[] _otherHubs;
+
+    /** The number of rotor settings tried by the last run. */
+    private long _trials;
+
+    /** The time taken by the last run. */
+    private long _nanos;
+
+}
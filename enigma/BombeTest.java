@@ -0,0 +1,125 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Bombe class.
+ *  @author Evelyn Vo
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** Checks that the bombe stops only at the settings a message was
+     *  encrypted with, finding the plugboard pairs of the letters in its
+     *  menu, including those not joined to its test letter, whether the
+     *  crib starts the message or not, on one thread or several. */
+    @Test
+    public void testStops() {
+        String[] rotors = {"B", "IV", "I", "III"};
+        String plain = "WEATHERREPORTFORTHENORTHSEA";
+        String cipher = navalEncrypt(rotors, "QEV", "(AQ) (EX) (HM) (RZ)",
+                                     plain);
+        Bombe bombe = new Bombe(navalMachine(4, NAVAL_ROTORS), cipher,
+                                plain, 0);
+        List<Bombe.Stop> stops = bombe.run(ForkJoinPool.commonPool());
+        assertEquals(1, stops.size());
+        assertEquals("* B IV I III QEV (AQ) (EX) (HM) (RZ)",
+                     stops.get(0).toString());
+        assertEquals(6 * 26 * 26 * 26, bombe.trials());
+        Machine M = navalMachine(4, NAVAL_ROTORS);
+        M.insertRotors(rotors);
+        M.setRotors(stops.get(0).settings());
+        M.setPlugboard(new Permutation(stops.get(0).plugboard(), UPPER));
+        assertEquals(plain, M.convert(cipher));
+
+        bombe = new Bombe(navalMachine(4, NAVAL_ROTORS), cipher,
+                          plain.substring(4), 4);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            stops = bombe.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, stops.size());
+        assertEquals("QEV", stops.get(0).settings());
+        assertEquals("(AQ) (EX) (HM) (RZ)", stops.get(0).plugboard());
+    }
+
+    /** Checks that the bombe runs on an alphabet of more than 64
+     *  letters, where every stop decrypts the message, and one is at the
+     *  settings it was encrypted with. */
+    @Test
+    public void testWideAlphabet() {
+        int n = 70;
+        StringBuilder letters = new StringBuilder();
+        for (int k = 0; k < n; k += 1) {
+            letters.append((char) ('0' + k));
+        }
+        Alphabet alpha = new Alphabet(letters.toString());
+        StringBuilder pairs = new StringBuilder();
+        for (int k = 0; k < n / 2; k += 1) {
+            pairs.append('(').append(letters.charAt(k))
+                .append(letters.charAt(k + n / 2)).append(") ");
+        }
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("R", new Permutation(pairs.toString(),
+                                                      alpha)));
+        String[] names = {"M", "N"};
+        int[] roots = {7, 59};
+        for (int r = 0; r < names.length; r += 1) {
+            StringBuilder cycle = new StringBuilder("(");
+            for (int k = 0, power = 1; k < n; k += 1) {
+                cycle.append(letters.charAt(power - 1));
+                power = power * roots[r] % (n + 1);
+            }
+            cycle.append(')');
+            rotors.add(new MovingRotor(names[r], new Permutation(
+                           cycle.toString(), alpha), "0"));
+        }
+        String[] order = {"R", "M", "N"};
+        Machine M = new Machine(alpha, 3, 2, rotors);
+        M.insertRotors(order);
+        M.setRotors("Au");
+        M.setPlugboard(new Permutation("(AB) (tu)", alpha));
+        String plain = "THEQUICKBROWNFOXJUMPSOVERTHELAZYDOG".repeat(3);
+        String cipher = M.convert(plain);
+        Bombe bombe = new Bombe(new Machine(alpha, 3, 2, rotors), cipher,
+                                plain, 0);
+        boolean found = false;
+        for (Bombe.Stop stop : bombe.run(ForkJoinPool.commonPool())) {
+            String[] words = stop.toString().split(" ");
+            M.insertRotors(Arrays.copyOfRange(words, 1, 4));
+            M.setRotors(stop.settings());
+            M.setPlugboard(new Permutation(stop.plugboard(), alpha));
+            assertEquals(plain, M.convert(cipher));
+            found |= stop.toString().equals("* R M N Au (AB) (tu)");
+        }
+        assertTrue(found);
+    }
+
+    /** Checks that a crib placed where one of its letters would encrypt
+     *  to itself is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testSelfEncryption() {
+        new Bombe(navalMachine(4, NAVAL_ROTORS), "ABCDE", "XBY", 0);
+    }
+
+    /** Checks that a crib longer than the ciphertext is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testCribTooLong() {
+        new Bombe(navalMachine(4, NAVAL_ROTORS), "ABC", "BCDA", 0);
+    }
+
+}
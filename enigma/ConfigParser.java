@@ -0,0 +1,450 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** A parser of configuration files that reads each character once,
+ *  building the alphabet and the wiring tables of the rotors as it checks
+ *  them, and reports errors with the line and column at which they were
+ *  found. It accepts what Main's Scanner-based reader did, and also
+ *  cycles written back to back, as Permutation does:
+ *      - the first line is the alphabet, whose characters must be
+ *        distinct, and none of '(', ')', '*' or whitespace;
+ *      - then come the numbers of slots and of pawls, after which the rest
+ *        of their line is ignored;
+ *      - then each rotor, as a name, a word giving its kind ('M', 'N' or
+ *        'R') followed by its notches, and its cycles, each a
+ *        whitespace-free "(...)" holding no '(', ')' or '*', separated
+ *        by whitespace or written back to back. A word that starts with
+ *        '(' but is not such cycles is an error. If a word not starting
+ *        with '(' follows the cycles on the line where they end, the rest
+ *        of that line is ignored, and any cycles on the following lines
+ *        still belong to the rotor.
+ *  Words are separated by whitespace, and lines end as for
+ *  Scanner.nextLine.
+ *  @author Evelyn Vo
+ */
+class ConfigParser {
+
+    /** A parser of the configuration read from READER, which is named NAME
+     *  in error messages. */
+    ConfigParser(Reader reader, String name) {
+        _reader = reader;
+        _name = name;
+    }
+
+    /** Returns the machine described by my configuration, which has no
+     *  rotors inserted. */
+    Machine parse() throws IOException {
+        Alphabet alphabet = readAlphabet();
+        int numRotors = readInt();
+        int numPawls = readInt();
+        if (!skipLine()) {
+            throw error("configuration file truncated");
+        }
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        int[] forward = new int[alphabet.size()];
+        int[] index = letterIndex(alphabet);
+        while (peekWord()) {
+            rotors.add(readRotor(alphabet, index, forward));
+        }
+        return new Machine(alphabet, numRotors, numPawls, rotors);
+    }
+
+    /** Reads the first line as an alphabet and returns it. */
+    private Alphabet readAlphabet() throws IOException {
+        if (peek() == -1) {
+            throw error("configuration file truncated");
+        }
+        StringBuilder letters = new StringBuilder();
+        int[] seen = new int[0];
+        for (int ch = peek(); ch != -1 && !isTerminator(ch); ch = peek()) {
+            if (ch == '(' || ch == ')' || ch == '*'
+                || isSpace((char) ch)) {
+                throw error("invalid character %s in alphabet", quote(ch));
+            }
+            if (ch >= seen.length * 32) {
+                seen = Arrays.copyOf(seen, Math.max(ch / 32 + 1,
+                                                    2 * seen.length));
+            }
+            if ((seen[ch / 32] & (1 << ch % 32)) != 0) {
+                throw error("duplicate character %s in alphabet",
+                            quote(ch));
+            }
+            seen[ch / 32] |= 1 << ch % 32;
+            letters.append((char) ch);
+            advance();
+        }
+        skipLine();
+        if (letters.length() == 0) {
+            throw error("Cannot have an empty alphabet.");
+        }
+        return Alphabet.trusted(letters.toString());
+    }
+
+    /** Returns the table whose entry for each character is its index in
+     *  ALPHABET, or -1 if it is not in ALPHABET, and which ends with the
+     *  last character of ALPHABET. */
+    private static int[] letterIndex(Alphabet alphabet) {
+        String letters = alphabet.toString();
+        int last = 0;
+        for (int index = 0; index < letters.length(); index += 1) {
+            last = Math.max(last, letters.charAt(index));
+        }
+        int[] table = new int[last + 1];
+        Arrays.fill(table, -1);
+        for (int index = 0; index < letters.length(); index += 1) {
+            table[letters.charAt(index)] = index;
+        }
+        return table;
+    }
+
+    /** Reads and returns the next word, which must be an int. */
+    private int readInt() throws IOException {
+        if (!peekWord()) {
+            throw error("configuration file truncated");
+        }
+        try {
+            return Integer.parseInt(takeWord());
+        } catch (NumberFormatException excp) {
+            throw errorAtWord("expected a number");
+        }
+    }
+
+    /** Reads the rotor whose name is the next word. INDEX is the
+     *  letterIndex of ALPHABET, and FORWARD is scratch space of its size. */
+    private Rotor readRotor(Alphabet alphabet, int[] index, int[] forward)
+        throws IOException {
+        int line = _wordLine;
+        int column = _wordColumn;
+        String name = takeWord();
+        if (!peekWord()) {
+            throw error("bad rotor description");
+        }
+        String settings = takeWord();
+        Arrays.fill(forward, -1);
+        readCycles(index, forward);
+        if (peekWord() && _wordLine == _lastLine) {
+            skipRestOfLine();
+        }
+        readCycles(index, forward);
+        for (int letter = 0; letter < forward.length; letter += 1) {
+            if (forward[letter] == -1) {
+                forward[letter] = letter;
+            }
+        }
+        Permutation perm = new Permutation(forward.clone(), alphabet);
+        String notches = settings.substring(1);
+        try {
+            switch (settings.charAt(0)) {
+            case 'M':
+                return new MovingRotor(name, perm, notches);
+            case 'N':
+                if (!notches.isEmpty()) {
+                    throw new EnigmaException("Fixed rotor "
+                            + "cannot have notches.");
+                }
+                return new FixedRotor(name, perm);
+            case 'R':
+                if (!notches.isEmpty()) {
+                    throw new EnigmaException("Reflector "
+                            + "cannot have notches.");
+                }
+                return new Reflector(name, perm);
+            default:
+                throw new EnigmaException("Rotor must be a "
+                        + "moving rotor (M), fixed rotor (N) "
+                        + "or a reflector (R).");
+            }
+        } catch (EnigmaException excp) {
+            throw new EnigmaException(String.format("%s:%d:%d: %s", _name,
+                                                    line, column,
+                                                    excp.getMessage()));
+        }
+    }
+
+    /** Reads the cycles that come next, recording in FORWARD, in which
+     *  -1 marks a letter not yet in any cycle, the index each letter goes
+     *  to, where letters are numbered by the letterIndex INDEX. A word
+     *  starting with '(' is read as one or more cycles written back to
+     *  back, and must be nothing else. While a cycle is read, its last
+     *  letter so far is marked IN_CYCLE. */
+    private void readCycles(int[] index, int[] forward)
+        throws IOException {
+        while (peekWord() && _word[0] == '(') {
+            char[] word = _word;
+            int k = 0;
+            while (k < _wordLength) {
+                if (word[k] != '(') {
+                    throw errorAt(_wordLine, _wordColumn + k,
+                                  "expected '(' rather than %s after cycle",
+                                  quote(word[k]));
+                }
+                int start = k;
+                int first = -1;
+                int prev = -1;
+                for (k += 1; k < _wordLength && word[k] != ')'; k += 1) {
+                    char ch = word[k];
+                    if (ch == '(' || ch == '*') {
+                        throw errorAt(_wordLine, _wordColumn + k,
+                                      "invalid character %s in cycle",
+                                      quote(ch));
+                    }
+                    int letter = ch < index.length ? index[ch] : -1;
+                    if (letter == -1) {
+                        throw errorAt(_wordLine, _wordColumn + k,
+                                      "%s in cycle is not in the alphabet",
+                                      quote(ch));
+                    }
+                    if (forward[letter] != -1) {
+                        throw errorAt(_wordLine, _wordColumn + k,
+                                      "duplicate character %s in cycles",
+                                      quote(ch));
+                    }
+                    forward[letter] = IN_CYCLE;
+                    if (prev == -1) {
+                        first = letter;
+                    } else {
+                        forward[prev] = letter;
+                    }
+                    prev = letter;
+                }
+                if (k == _wordLength) {
+                    throw errorAt(_wordLine, _wordColumn + start,
+                                  "unclosed cycle");
+                } else if (prev == -1) {
+                    throw errorAt(_wordLine, _wordColumn + start,
+                                  "empty cycle");
+                }
+                forward[prev] = first;
+                k += 1;
+            }
+            takeWord();
+        }
+    }
+
+    /** Reads the next word, if it has not already been read, so that it
+     *  is pending. Returns false if there are no more words. */
+    private boolean peekWord() throws IOException {
+        if (_pending) {
+            return true;
+        }
+        int ch;
+        for (ch = peek(); ch != -1 && isSpace((char) ch); ch = peek()) {
+            advance();
+        }
+        if (ch == -1) {
+            return false;
+        }
+        _wordLine = _line;
+        _wordColumn = _column;
+        _wordLength = 0;
+        while (peek() != -1) {
+            char[] buffer = _buffer;
+            int start = _pos;
+            int end = _end;
+            int pos;
+            for (pos = start; pos < end; pos += 1) {
+                char c = buffer[pos];
+                if (c == '\u0085' || isSpace(c)) {
+                    break;
+                }
+            }
+            int n = pos - start;
+            if (_wordLength + n > _word.length) {
+                _word = Arrays.copyOf(_word,
+                                      Math.max(2 * _word.length,
+                                               _wordLength + n));
+            }
+            System.arraycopy(buffer, start, _word, _wordLength, n);
+            _wordLength += n;
+            _column += n;
+            _pos = pos;
+            if (pos == end) {
+                continue;
+            } else if (isSpace(buffer[pos])) {
+                break;
+            }
+            append(buffer[pos]);
+            advance();
+        }
+        _pending = true;
+        return true;
+    }
+
+    /** Adds CH to the end of _word. */
+    private void append(char ch) {
+        if (_wordLength == _word.length) {
+            _word = Arrays.copyOf(_word, 2 * _word.length);
+        }
+        _word[_wordLength] = ch;
+        _wordLength += 1;
+    }
+
+    /** Returns true iff CH separates words, as Character.isWhitespace, but
+     *  quickly for the characters between ' ' and '\u1680' and above
+     *  '\u3000', none of which does. Without the upper bound, every
+     *  letter of an alphabet such as CJK ideographs would take the slow
+     *  path. */
+    private static boolean isSpace(char ch) {
+        if (ch <= ' ') {
+            return Character.isWhitespace(ch);
+        }
+        return ch >= '\u1680' && ch <= '\u3000' && Character.isWhitespace(ch);
+    }
+
+    /** Consumes the pending word and returns it. */
+    private String takeWord() {
+        _pending = false;
+        _lastLine = _line;
+        return new String(_word, 0, _wordLength);
+    }
+
+    /** Consumes the rest of the line on which the last word consumed
+     *  ended, on which the pending word starts. The pending word may
+     *  itself span the end of that line, since '\u0085' ends lines but
+     *  does not separate words, in which case what follows it is left
+     *  pending. */
+    private void skipRestOfLine() throws IOException {
+        for (int index = 0; index < _wordLength; index += 1) {
+            if (isTerminator(_word[index])) {
+                _wordLength -= index + 1;
+                System.arraycopy(_word, index + 1, _word, 0, _wordLength);
+                _wordLine += 1;
+                _wordColumn = 1;
+                _pending = _wordLength > 0;
+                return;
+            }
+        }
+        _pending = false;
+        skipLine();
+    }
+
+    /** Consumes the rest of the current line and its terminator, if any.
+     *  Returns false if there was nothing left to consume. */
+    private boolean skipLine() throws IOException {
+        int ch = peek();
+        if (ch == -1) {
+            return false;
+        }
+        for (; ch != -1 && !isTerminator(ch); ch = peek()) {
+            advance();
+        }
+        if (ch != -1) {
+            advance();
+            if (ch == '\r' && peek() == '\n') {
+                advance();
+            }
+        }
+        return true;
+    }
+
+    /** Returns the next character without consuming it, or -1 at the end
+     *  of input. */
+    private int peek() throws IOException {
+        if (_pos == _end) {
+            int n = _reader.read(_buffer, 0, _buffer.length);
+            if (n == -1) {
+                return -1;
+            }
+            _pos = 0;
+            _end = n;
+        }
+        return _buffer[_pos];
+    }
+
+    /** Consumes the character last returned by peek, keeping track of
+     *  the line and column. */
+    private void advance() {
+        char ch = _buffer[_pos];
+        _pos += 1;
+        if (isTerminator(ch) && !(ch == '\n' && _afterReturn)) {
+            _line += 1;
+            _column = 1;
+        } else if (!isTerminator(ch)) {
+            _column += 1;
+        }
+        _afterReturn = ch == '\r';
+    }
+
+    /** Returns true iff CH ends a line. */
+    private static boolean isTerminator(int ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085'
+            || ch == '\u2028' || ch == '\u2029';
+    }
+
+    /** Returns CH quoted for an error message. */
+    private static String quote(int ch) {
+        return "'" + (char) ch + "'";
+    }
+
+    /** Returns an exception reporting the error described by FORMAT and
+     *  ARGS at the next character. */
+    private EnigmaException error(String format, Object... args) {
+        return errorAt(_line, _column, format, args);
+    }
+
+    /** Returns an exception reporting the error described by FORMAT and
+     *  ARGS at the pending word. */
+    private EnigmaException errorAtWord(String format, Object... args) {
+        return errorAt(_wordLine, _wordColumn, format, args);
+    }
+
+    /** Returns an exception reporting the error described by FORMAT and
+     *  ARGS at column COLUMN of line LINE. */
+    private EnigmaException errorAt(int line, int column, String format,
+                                    Object... args) {
+        return new EnigmaException(String.format("%s:%d:%d: ", _name, line,
+                                                 column)
+                                   + String.format(format, args));
+    }
+
+    /** Marks a letter whose image is not yet known in readCycles. */
+    private static final int IN_CYCLE = -2;
+
+    /** Characters read at a time. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The source of the configuration. */
+    private final Reader _reader;
+
+    /** The name of the configuration in error messages. */
+    private final String _name;
+
+    /** Characters read from _reader. */
+    private final char[] _buffer = new char[BUFFER_SIZE];
+
+    /** The index in _buffer of the next character. */
+    private int _pos;
+
+    /** The number of characters in _buffer. */
+    private int _end;
+
+    /** The line of the next character, numbering from 1. */
+    private int _line = 1;
+
+    /** The column of the next character, numbering from 1. */
+    private int _column = 1;
+
+    /** True iff the last character consumed was '\r'. */
+    private boolean _afterReturn;
+
+    /** The characters of the last word read. */
+    private char[] _word = new char[64];
+
+    /** The number of characters in _word. */
+    private int _wordLength;
+
+    /** True iff _word has been read but not consumed. */
+    private boolean _pending;
+
+    /** The line and column at which _word starts. */
+    private int _wordLine, _wordColumn;
+
+    /** The line on which the last word consumed ended. */
+    private int _lastLine;
+
+}
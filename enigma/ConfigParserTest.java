@@ -0,0 +1,135 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/** The suite of all JUnit tests for the ConfigParser class.
+ *  @author Evelyn Vo
+ */
+public class ConfigParserTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** A small configuration in which the rest of a line of rotor I's
+     *  cycles is ignored after a comment, and its cycles continue on the
+     *  next line. */
+    private static final String CONFIG =
+        "ABCDEF\n 3 1 pawls\n"
+        + " R1 R (AB) (CD)\n (EF)\n"
+        + " N1 N (ACE) (BDF)\n"
+        + " I MB (ABC) comment (DE)\n (F)\n"
+        + " II MAC (AF) (BCDE)\n";
+
+    /** Returns the machine described by TEXT. */
+    private Machine parse(String text) throws IOException {
+        return new ConfigParser(new StringReader(text), "test.conf").parse();
+    }
+
+    /** Returns the message of the error raised by parsing TEXT, failing
+     *  if it parses. */
+    private String parseError(String text) throws IOException {
+        try {
+            parse(text);
+        } catch (EnigmaException excp) {
+            return excp.getMessage();
+        }
+        fail("expected an error parsing " + text);
+        return null;
+    }
+
+    /** Checks that the rotors are read with their kinds and wirings. */
+    @Test
+    public void testParse() throws IOException {
+        Machine M = parse(CONFIG);
+        assertEquals("ABCDEF", M.alphabet().toString());
+        assertEquals(3, M.numRotors());
+        assertEquals(1, M.numPawls());
+        assertEquals(4, M.availableRotors().size());
+        Rotor r1 = M.availableRotors().get(0);
+        assertEquals("R1", r1.name());
+        assertTrue(r1.reflecting());
+        assertEquals(5, r1.convertForward(4));
+        Rotor one = M.availableRotors().get(2);
+        assertTrue(one.rotates());
+        assertEquals(4, one.convertForward(4));
+        assertEquals(5, one.convertForward(5));
+        assertFalse(M.availableRotors().get(1).rotates());
+    }
+
+    /** Checks that errors give the name, line and column at which they
+     *  were found. */
+    @Test
+    public void testErrorPositions() throws IOException {
+        assertEquals("test.conf:3:9: duplicate character 'B' in cycles",
+                     parseError("ABCD\n 1 0\n R R (ABB)\n"));
+        assertEquals("test.conf:3:7: 'X' in cycle is not in the alphabet",
+                     parseError("ABCD\n 1 0\n R R (X)\n"));
+        assertEquals("test.conf:2:4: expected a number",
+                     parseError("ABCD\n 1 x\n"));
+        assertTrue(parseError("ABCD\n 1 0\n F NA (AB)\n")
+                   .startsWith("test.conf:3:2: Fixed rotor"));
+        assertTrue(parseError("AB(\n").contains("invalid character"));
+        assertTrue(parseError("ABA\n").contains("duplicate character"));
+    }
+
+    /** Checks that truncated configurations are rejected. */
+    @Test
+    public void testTruncated() throws IOException {
+        assertTrue(parseError("").contains("truncated"));
+        assertTrue(parseError("ABC\n").contains("truncated"));
+        assertTrue(parseError("ABC\n 1 0").contains("truncated"));
+        assertTrue(parseError("ABC\n 1 0\n R").contains("bad rotor"));
+    }
+
+    /** Checks that other line terminators end lines, and that NEL ends
+     *  the ignored rest of a line without ending the words on it. */
+    @Test
+    public void testLineEnds() throws IOException {
+        Machine M = parse("ABCD\r\n 2 1 x\u2028 R R (AB)\r (CD)\n"
+                          + " M M (ABCD)\n");
+        assertEquals(1, M.availableRotors().get(0).convertForward(0));
+        M = parse("ABCD\n 2 1\n R R (AB) x\u0085(CD)\n M M (ABCD)\n");
+        assertEquals(3, M.availableRotors().get(0).convertForward(2));
+    }
+
+    /** Checks that cycles written back to back are read as separate
+     *  cycles, as Permutation reads them, and that a word starting with
+     *  '(' that is not cycles is an error rather than skipped. */
+    @Test
+    public void testAdjacentCycles() throws IOException {
+        Rotor rotor = parse("ABCDEF\n 2 1\n R R (AB)(CD) (EF)\n"
+                            + " M M (ABC)(DEF)\n").availableRotors().get(1);
+        assertEquals(1, rotor.convertForward(0));
+        assertEquals(0, rotor.convertForward(2));
+        assertEquals(4, rotor.convertForward(3));
+        assertEquals(3, rotor.convertForward(5));
+        assertEquals("test.conf:3:10: expected '(' rather than 'x' after "
+                     + "cycle", parseError("ABCD\n 1 0\n R R (AB)x(CD)\n"));
+        assertEquals("test.conf:3:10: unclosed cycle",
+                     parseError("ABCD\n 1 0\n R R (AB)(CD\n"));
+        assertEquals("test.conf:3:10: empty cycle",
+                     parseError("ABCD\n 1 0\n R R (AB)()\n"));
+        assertEquals("test.conf:3:8: invalid character '*' in cycle",
+                     parseError("ABCD\n 1 0\n R R (A*B)\n"));
+    }
+
+    /** Checks that letters above the whitespace characters are read as
+     *  letters, and that the ideographic space still separates words. */
+    @Test
+    public void testWideLetters() throws IOException {
+        Machine M = parse("\u4E00\u4E01\u4E02\uFF21\n 2 1\n"
+                          + " R\u3000R (\u4E00\u4E01)\u3000(\u4E02\uFF21)\n"
+                          + " M M\u4E02 (\u4E00\u4E01\u4E02\uFF21)\n");
+        assertEquals(2, M.availableRotors().size());
+        assertEquals(3, M.availableRotors().get(0).convertForward(2));
+        assertEquals(0, M.availableRotors().get(1).convertForward(3));
+    }
+
+}
@@ -0,0 +1,224 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/** A server that converts messages for clients on the same host, over a
+ *  loopback TCP port or a Unix domain socket, so that they pay neither
+ *  JVM start-up nor configuration parsing for each message. Clients send
+ *  lines of UTF-8 text, and each request gets one line in reply:
+ *      A settings line (one starting with '*') followed by a message
+ *      line asks for the message to be converted with a machine set up
+ *      by the settings. The reply is the converted message, or "ERROR: "
+ *      and the reason.
+ *      "STATS" asks for the number of messages converted so far and the
+ *      percentiles of the time taken to convert them.
+ *      "SHUTDOWN" replies "OK" and shuts the server down (see shutdown).
+ *  Each connection is served by its own thread, so a client may keep one
+ *  open for many requests.
+ *  @author Evelyn Vo
+ */
+class EnigmaDaemon {
+
+    /** Converts messages for an EnigmaDaemon. It is called from many
+     *  threads at once. */
+    interface Converter {
+        /** Returns MESSAGE converted with a machine set up by the settings
+         *  line SETTINGS. */
+        String convert(String settings, String message);
+    }
+
+    /** A server listening on ADDRESS, converting messages with
+     *  CONVERTER. */
+    EnigmaDaemon(SocketAddress address, Converter converter)
+        throws IOException {
+        _converter = converter;
+        if (address instanceof UnixDomainSocketAddress) {
+            _server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            _server = ServerSocketChannel.open();
+        }
+        _server.bind(address);
+        _address = _server.getLocalAddress();
+    }
+
+    /** Returns the address named by SPEC: a port on the loopback
+     *  interface if SPEC is a number, and otherwise the path of a Unix
+     *  domain socket. */
+    static SocketAddress address(String spec) {
+        if (spec.matches("\\d+")) {
+            try {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                             Integer.parseInt(spec));
+            } catch (IllegalArgumentException excp) {
+                throw new EnigmaException("Invalid port " + spec);
+            }
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    /** Returns the address I listen on. */
+    SocketAddress address() {
+        return _address;
+    }
+
+    /** Returns the times I have taken to convert messages. */
+    LatencyHistogram latencies() {
+        return _latencies;
+    }
+
+    /** Serves clients until shutdown is called, then waits up to
+     *  SHUTDOWN_GRACE seconds for open connections to finish. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                SocketChannel client;
+                try {
+                    client = _server.accept();
+                } catch (ClosedChannelException excp) {
+                    break;
+                }
+                _pool.execute(() -> handle(client));
+            }
+        } finally {
+            _pool.shutdown();
+            try {
+                if (!_pool.awaitTermination(SHUTDOWN_GRACE,
+                                            TimeUnit.SECONDS)) {
+                    _pool.shutdownNow();
+                }
+            } catch (InterruptedException excp) {
+                _pool.shutdownNow();
+            }
+            if (_address instanceof UnixDomainSocketAddress) {
+                Path path = ((UnixDomainSocketAddress) _address).getPath();
+                Files.deleteIfExists(path);
+            }
+            _stopped.countDown();
+        }
+    }
+
+    /** Stops accepting connections. Requests already received are
+     *  answered, after which each connection is closed. */
+    void shutdown() {
+        _shuttingDown = true;
+        try {
+            _server.close();
+        } catch (IOException excp) {
+            /* Closing anyway. */
+        }
+    }
+
+    /** Waits until serve has returned. */
+    void awaitStopped() throws InterruptedException {
+        _stopped.await();
+    }
+
+    /** Answers the requests of the client on CLIENT until it closes the
+     *  connection or I shut down. */
+    private void handle(SocketChannel client) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 Channels.newInputStream(client), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(
+                 Channels.newOutputStream(client), StandardCharsets.UTF_8))) {
+            String line;
+            while (!_shuttingDown && (line = in.readLine()) != null) {
+                String request = line.trim();
+                String reply;
+                if (request.startsWith("*")) {
+                    String message = in.readLine();
+                    if (message == null) {
+                        break;
+                    }
+                    reply = convert(line, message);
+                } else if (request.equals("STATS")) {
+                    reply = stats();
+                } else if (request.equals("SHUTDOWN")) {
+                    reply = "OK";
+                    shutdown();
+                } else {
+                    reply = "ERROR: unknown request " + request;
+                }
+                out.write(reply);
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException excp) {
+            /* The client has gone, or we are shutting down. */
+        }
+    }
+
+    /** Returns the reply to a request to convert MESSAGE with the settings
+     *  line SETTINGS, recording the time taken. */
+    private String convert(String settings, String message) {
+        long start = System.nanoTime();
+        try {
+            return _converter.convert(settings, message);
+        } catch (EnigmaException excp) {
+            return "ERROR: " + excp.getMessage();
+        } finally {
+            _latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    /** Returns the reply to a STATS request. */
+    String stats() {
+        LatencyHistogram latencies = _latencies;
+        return String.format("requests %d p50 %.1f us p90 %.1f us "
+                             + "p99 %.1f us p99.9 %.1f us max %.1f us",
+                             latencies.count(),
+                             latencies.percentile(50) / 1e3,
+                             latencies.percentile(90) / 1e3,
+                             latencies.percentile(99) / 1e3,
+                             latencies.percentile(99.9) / 1e3,
+                             latencies.max() / 1e3);
+    }
+
+    /** Seconds to wait for open connections when shutting down. */
+    static final int SHUTDOWN_GRACE = 5;
+
+    /** Converts messages. */
+    private final Converter _converter;
+
+    /** Accepts connections. */
+    private final ServerSocketChannel _server;
+
+    /** The address _server listens on. */
+    private final SocketAddress _address;
+
+    /** Runs the thread serving each connection. */
+    private final ExecutorService _pool = Executors.newCachedThreadPool();
+
+    /** The times taken to convert messages. */
+    private final LatencyHistogram _latencies = new LatencyHistogram();
+
+    /** Released when serve returns. */
+    private final CountDownLatch _stopped = new CountDownLatch(1);
+
+    /** True once shutdown has been called. */
+    private volatile boolean _shuttingDown;
+
+}
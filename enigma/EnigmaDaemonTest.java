@@ -0,0 +1,73 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/** The suite of all JUnit tests for the EnigmaDaemon class.
+ *  @author Evelyn Vo
+ */
+public class EnigmaDaemonTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Checks each kind of request over TCP, and that a SHUTDOWN request
+     *  stops the daemon. */
+    @Test
+    public void testRequests() throws Exception {
+        EnigmaDaemon daemon = new EnigmaDaemon(
+            EnigmaDaemon.address("0"), (settings, message) -> {
+                if (message.isEmpty()) {
+                    throw new EnigmaException("empty");
+                }
+                return settings.trim() + ":" + message.toLowerCase();
+            });
+        Thread server = new Thread(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException excp) {
+                throw new RuntimeException(excp);
+            }
+        });
+        server.start();
+        InetSocketAddress address = (InetSocketAddress) daemon.address();
+        try (Socket socket = new Socket(address.getAddress(),
+                                        address.getPort());
+             PrintWriter out = new PrintWriter(socket.getOutputStream(),
+                                               true, StandardCharsets.UTF_8);
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                 socket.getInputStream(), StandardCharsets.UTF_8))) {
+            out.print("* AB\nHELLO\n  * C\n\n");
+            out.flush();
+            assertEquals("* AB:hello", in.readLine());
+            assertEquals("ERROR: empty", in.readLine());
+            out.println("WHAT");
+            assertEquals("ERROR: unknown request WHAT", in.readLine());
+            out.println("STATS");
+            assertTrue(in.readLine().startsWith("requests 2 p50 "));
+            out.println("SHUTDOWN");
+            assertEquals("OK", in.readLine());
+            assertNull(in.readLine());
+        }
+        daemon.awaitStopped();
+        assertEquals(2, daemon.latencies().count());
+    }
+
+    /** Checks that a bad port is rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testBadPort() {
+        EnigmaDaemon.address("70000");
+    }
+
+}
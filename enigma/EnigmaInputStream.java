@@ -0,0 +1,75 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** An input stream converting the bytes it reads from another stream
+ *  with a machine whose alphabet has 256 characters, as
+ *  Machine.convert(byte[], int, int, byte[], int) does. Bytes are
+ *  converted in place in the caller's buffer, so reading allocates
+ *  nothing. Bytes skipped still step the machine, so that the bytes
+ *  after them are converted as if those skipped had been read. Marks are
+ *  not supported, since the machine cannot step backwards.
+ *  @author Evelyn Vo
+ */
+class EnigmaInputStream extends FilterInputStream {
+
+    /** A stream converting the bytes read from IN with MACHINE, which
+     *  must already be set up and is stepped by each byte read. */
+    EnigmaInputStream(InputStream in, Machine machine) {
+        super(in);
+        if (machine.alphabet().size() != Machine.BYTE_VALUES) {
+            throw new EnigmaException("Byte streams need a machine with an "
+                                      + "alphabet of " + Machine.BYTE_VALUES
+                                      + " characters.");
+        }
+        _machine = machine;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            return -1;
+        }
+        return _machine.convert(b);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            _machine.convert(b, off, n, b, off);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) {
+            _machine.seek(skipped);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        /* Marks are not supported. */
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /** Converts the bytes read. */
+    private final Machine _machine;
+
+}
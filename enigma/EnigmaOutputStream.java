@@ -0,0 +1,59 @@
+package enigma;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** An output stream converting the bytes written to it with a machine
+ *  whose alphabet has 256 characters, as
+ *  Machine.convert(byte[], int, int, byte[], int) does, before passing
+ *  them on to another stream. Arrays of bytes are converted a block at a
+ *  time through a buffer allocated with the stream, leaving the caller's
+ *  array unchanged, so writing allocates nothing.
+ *  @author Evelyn Vo
+ */
+class EnigmaOutputStream extends FilterOutputStream {
+
+    /** A stream converting the bytes written to it with MACHINE, which
+     *  must already be set up and is stepped by each byte written, and
+     *  writing the result to OUT. */
+    EnigmaOutputStream(OutputStream out, Machine machine) {
+        super(out);
+        if (machine.alphabet().size() != Machine.BYTE_VALUES) {
+            throw new EnigmaException("Byte streams need a machine with an "
+                                      + "alphabet of " + Machine.BYTE_VALUES
+                                      + " characters.");
+        }
+        _machine = machine;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(_machine.convert(b & 0xFF));
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        byte[] buffer = _buffer;
+        while (len > 0) {
+            int n = Math.min(len, buffer.length);
+            _machine.convert(b, off, n, buffer, 0);
+            out.write(buffer, 0, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** The number of bytes converted at a time. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Converts the bytes written. */
+    private final Machine _machine;
+
+    /** Holds the bytes converted, before they are written to out. */
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+
+}
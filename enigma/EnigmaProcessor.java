@@ -0,0 +1,315 @@
+package enigma;
+
+import java.nio.CharBuffer;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A Flow.Processor converting a stream of chunks of text with one
+ *  machine, for callers that receive messages asynchronously rather than
+ *  from a file. Each chunk received is converted as Machine.convert
+ *  converts it, in the order received, so that the chunks of a message
+ *  may be split anywhere. A chunk whose first character other than
+ *  whitespace is '*' is instead a whole settings line, which sets the
+ *  machine up afresh as such a line does in Main's input; the chunks
+ *  converted before and after it are never published together.
+ *
+ *  Chunks that are waiting when the subscriber asks for more are
+ *  converted together into one buffer of up to a batch size of
+ *  characters, so a stream of small chunks costs one publication per
+ *  batch rather than per chunk. No more than a fixed number of chunks
+ *  are ever requested from upstream beyond those converted, and chunks
+ *  are converted only when the subscriber has asked for the result, so
+ *  a slow subscriber holds back the publisher rather than making chunks
+ *  pile up.
+ *
+ *  A processor has one subscriber, and subscribes to one publisher.
+ *  Signals may come from any threads; they are handled one at a time,
+ *  by whichever thread finds no other handling them, so a chunk is
+ *  converted on the thread that delivered it or the thread that
+ *  requested its result. Received chunks are consumed: their positions
+ *  are advanced to their limits.
+ *  @author Evelyn Vo
+ */
+class EnigmaProcessor implements Flow.Processor<CharBuffer, CharBuffer> {
+
+    /** Sets up the machine of an EnigmaProcessor from a settings line. */
+    interface Configurer {
+        /** Sets the machine up by the settings line SETTINGS, throwing an
+         *  EnigmaException if it is malformed. */
+        void setUp(String settings);
+    }
+
+    /** A processor converting with MACHINE, which must already be set
+     *  up, and setting it up again by passing settings lines to
+     *  CONFIGURER. It holds up to CAPACITY chunks not yet converted and
+     *  publishes up to BATCHSIZE characters at a time, though a single
+     *  chunk longer than that is published whole. */
+    EnigmaProcessor(Machine machine, Configurer configurer, int capacity,
+                    int batchSize) {
+        if (capacity < 1 || batchSize < 1) {
+            throw new EnigmaException("Processor capacity and batch size "
+                                      + "must be positive.");
+        }
+        _machine = machine;
+        _configurer = configurer;
+        _capacity = capacity;
+        _batchSize = batchSize;
+    }
+
+    /** A processor converting with MACHINE and setting it up with
+     *  CONFIGURER, with the default capacity and batch size. */
+    EnigmaProcessor(Machine machine, Configurer configurer) {
+        this(machine, configurer, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (_upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        _upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(CharBuffer item) {
+        _pending.offer(item);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        _upstreamError = excp;
+        _upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        _upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharBuffer> subscriber) {
+        if (_downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        /* Nothing will be sent. */
+                    }
+
+                    @Override
+                    public void cancel() {
+                        /* Nothing will be sent. */
+                    }
+                });
+            subscriber.onError(new IllegalStateException(
+                "EnigmaProcessor already has a subscriber"));
+            return;
+        }
+        _downstream = subscriber;
+        subscriber.onSubscribe(new Subscription());
+        _downstreamReady = true;
+        drain();
+    }
+
+    /** The subscription of my subscriber. */
+    private class Subscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                _failure = new IllegalArgumentException(
+                    "non-positive request " + n);
+            } else {
+                _demand.accumulateAndGet(n, (demand, more) ->
+                    demand + more < 0 ? Long.MAX_VALUE : demand + more);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            drain();
+        }
+
+    }
+
+    /** Handles whatever signals have arrived, unless another thread is
+     *  already doing so, in which case it will see them. */
+    private void drain() {
+        if (_work.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            handleSignals();
+            missed = _work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /** Converts and publishes as many chunks as my subscriber has asked
+     *  for, and requests more from upstream to replace them. Called by
+     *  one thread at a time. */
+    private void handleSignals() {
+        if (_terminated || !_downstreamReady || _upstream == null) {
+            return;
+        }
+        if (_cancelled) {
+            terminate(null, false);
+            return;
+        }
+        if (!_started) {
+            _started = true;
+            _upstream.request(_capacity);
+        }
+        int consumed = 0;
+        try {
+            while (_failure == null && _demand.get() > 0
+                   && !_pending.isEmpty()) {
+                CharBuffer first = _pending.peek();
+                if (isSettings(first)) {
+                    _pending.poll();
+                    consumed += 1;
+                    _configurer.setUp(first.toString());
+                    first.position(first.limit());
+                    continue;
+                }
+                consumed += publishBatch();
+            }
+        } catch (EnigmaException excp) {
+            _failure = excp;
+        }
+        if (_failure != null) {
+            terminate(_failure, true);
+        } else if (_upstreamDone && _pending.isEmpty()) {
+            terminate(_upstreamError, false);
+        } else if (consumed > 0) {
+            _upstream.request(consumed);
+        }
+    }
+
+    /** Converts the chunks at the head of _pending, up to the next
+     *  settings line and to _batchSize characters in all, into one
+     *  buffer, publishes it, and returns the number of chunks
+     *  converted. */
+    private int publishBatch() {
+        int count = 0;
+        int total = 0;
+        Iterator<CharBuffer> chunks = _pending.iterator();
+        while (chunks.hasNext()) {
+            CharBuffer chunk = chunks.next();
+            if (isSettings(chunk)
+                || (count > 0 && total + chunk.remaining() > _batchSize)) {
+                break;
+            }
+            count += 1;
+            total += chunk.remaining();
+        }
+        CharBuffer result = CharBuffer.allocate(total);
+        for (int index = 0; index < count; index += 1) {
+            _machine.convert(_pending.poll(), result);
+        }
+        result.flip();
+        _demand.decrementAndGet();
+        _downstream.onNext(result);
+        return count;
+    }
+
+    /** Stops processing, cancelling my subscription upstream if CANCEL,
+     *  and telling my subscriber that I have failed with EXCP, or
+     *  completed if EXCP is null, unless it has cancelled. */
+    private void terminate(Throwable excp, boolean cancel) {
+        _terminated = true;
+        _pending.clear();
+        if (cancel || _cancelled) {
+            _upstream.cancel();
+        }
+        if (_cancelled) {
+            return;
+        } else if (excp != null) {
+            _downstream.onError(excp);
+        } else {
+            _downstream.onComplete();
+        }
+    }
+
+    /** Returns true iff CHUNK is a settings line: its first character
+     *  other than whitespace is '*'. */
+    private static boolean isSettings(CharBuffer chunk) {
+        for (int index = chunk.position(); index < chunk.limit();
+             index += 1) {
+            char ch = chunk.get(index);
+            if (!Character.isWhitespace(ch)) {
+                return ch == '*';
+            }
+        }
+        return false;
+    }
+
+    /** The number of chunks held unconverted by default. */
+    static final int DEFAULT_CAPACITY = 64;
+
+    /** The most characters published at a time by default. */
+    static final int DEFAULT_BATCH_SIZE = 1 << 16;
+
+    /** Converts chunks. */
+    private final Machine _machine;
+
+    /** Sets _machine up from settings lines. */
+    private final Configurer _configurer;
+
+    /** The most chunks I hold unconverted. */
+    private final int _capacity;
+
+    /** The most characters I publish at a time, but for long chunks. */
+    private final int _batchSize;
+
+    /** Chunks received and not yet converted, in order. */
+    private final ConcurrentLinkedQueue<CharBuffer> _pending =
+        new ConcurrentLinkedQueue<>();
+
+    /** The number of buffers my subscriber has asked for and not yet
+     *  been sent. */
+    private final AtomicLong _demand = new AtomicLong();
+
+    /** The number of times drain has been called and its signals not
+     *  yet handled. */
+    private final AtomicInteger _work = new AtomicInteger();
+
+    /** My subscription upstream, or null until I have one. */
+    private volatile Flow.Subscription _upstream;
+
+    /** My subscriber, or null until I have one. */
+    private volatile Flow.Subscriber<? super CharBuffer> _downstream;
+
+    /** True once _downstream has been given its subscription. */
+    private volatile boolean _downstreamReady;
+
+    /** True once upstream has completed or failed. */
+    private volatile boolean _upstreamDone;
+
+    /** The failure of upstream, or null. */
+    private volatile Throwable _upstreamError;
+
+    /** True once my subscriber has cancelled. */
+    private volatile boolean _cancelled;
+
+    /** The error, if any, that I am to fail with. */
+    private volatile Throwable _failure;
+
+    /** True once I have requested my first chunks from upstream. Used
+     *  only while handling signals. */
+    private boolean _started;
+
+    /** True once I have stopped. Used only while handling signals. */
+    private boolean _terminated;
+
+}
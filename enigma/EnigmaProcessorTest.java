@@ -0,0 +1,205 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaProcessor class.
+ *  @author Evelyn Vo
+ */
+public class EnigmaProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Returns a machine with the naval rotors B, Beta, I, III and IV,
+     *  set up by the settings line SETTINGS, which names them all, gives
+     *  the positions of the last four and may give plugboard cycles. */
+    private static Machine navalMachine(String settings) {
+        Machine M = TestUtils.navalMachine(5, NAVAL_ROTORS);
+        setUp(M, settings);
+        return M;
+    }
+
+    /** Sets M up by the settings line SETTINGS, as navalMachine
+     *  describes. */
+    private static void setUp(Machine M, String settings) {
+        String[] words = settings.trim().split("\\s+", 7);
+        M.insertRotors(new String[] {words[1], words[2], words[3], words[4],
+                                     words[5]});
+        String[] rest = words[6].split("\\s+", 2);
+        M.setRotors(rest[0]);
+        if (rest.length > 1) {
+            M.setPlugboard(new Permutation(rest[1], UPPER));
+        } else {
+            M.clearPlugboard();
+        }
+    }
+
+    /** A subscriber collecting what it receives, asking for one buffer
+     *  at a time, and initially for INITIAL. */
+    private static class Collector implements Flow.Subscriber<CharBuffer> {
+
+        /** A collector asking for INITIAL buffers at first. */
+        Collector(long initial) {
+            _initial = initial;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            if (_initial > 0) {
+                subscription.request(_initial);
+            }
+        }
+
+        @Override
+        public void onNext(CharBuffer item) {
+            _received.add(item.toString());
+            _subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            _error = excp;
+            _done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            _done.countDown();
+        }
+
+        /** Waits for completion or failure, and returns what was
+         *  received. */
+        List<String> await() throws InterruptedException {
+            assertTrue("processing timed out",
+                       _done.await(5, TimeUnit.SECONDS));
+            return _received;
+        }
+
+        /** The number of buffers asked for at first. */
+        private final long _initial;
+
+        /** The buffers received, as strings. */
+        private final List<String> _received = new ArrayList<>();
+
+        /** The failure received, or null. */
+        private volatile Throwable _error;
+
+        /** My subscription. */
+        private volatile Flow.Subscription _subscription;
+
+        /** Released on completion or failure. */
+        private final CountDownLatch _done = new CountDownLatch(1);
+    }
+
+    /** A subscription recording what is requested of it. */
+    private static class Upstream implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            _requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+        }
+
+        /** The total number of items requested. */
+        private long _requested;
+
+        /** True once cancelled. */
+        private boolean _cancelled;
+    }
+
+    /** The settings of the naval example. */
+    private static final String NAVAL = "* B Beta III IV I AXLE (HQ) (EX)";
+
+    /** Checks that chunks published asynchronously are converted in
+     *  order, and that a settings line sets the machine up again. */
+    @Test
+    public void testConversion() throws InterruptedException {
+        String other = "* B Beta I III IV ABCD";
+        String[] chunks = {"FROMH", "IS SHOULDER", "\nHIAWA", "THA"};
+        Machine M = navalMachine(NAVAL);
+        EnigmaProcessor processor =
+            new EnigmaProcessor(M, settings -> setUp(M, settings), 4, 8);
+        Collector collector = new Collector(1);
+        processor.subscribe(collector);
+        try (SubmissionPublisher<CharBuffer> publisher =
+                 new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (String chunk : chunks) {
+                publisher.submit(CharBuffer.wrap(chunk));
+            }
+            publisher.submit(CharBuffer.wrap("  " + other));
+            publisher.submit(CharBuffer.wrap("HELLO"));
+        }
+        String result = String.join("", collector.await());
+        assertNull(collector._error);
+        String expected = navalMachine(NAVAL).convert(String.join("", chunks))
+            + navalMachine(other).convert("HELLO");
+        assertEquals(expected, result);
+    }
+
+    /** Checks that a subscriber that has asked for nothing gets nothing,
+     *  that no more chunks are requested than can be held, and that
+     *  waiting chunks are then published in batches. */
+    @Test
+    public void testBackpressure() throws InterruptedException {
+        Machine M = navalMachine(NAVAL);
+        EnigmaProcessor processor =
+            new EnigmaProcessor(M, settings -> setUp(M, settings), 5, 12);
+        Collector collector = new Collector(0);
+        processor.subscribe(collector);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        assertEquals(5, upstream._requested);
+        for (int index = 0; index < 5; index += 1) {
+            processor.onNext(CharBuffer.wrap("ABCDE"));
+        }
+        assertTrue(collector._received.isEmpty());
+        assertEquals(5, upstream._requested);
+        collector._subscription.request(1);
+        assertEquals(10, upstream._requested);
+        processor.onComplete();
+        List<String> received = collector.await();
+        assertEquals(3, received.size());
+        assertEquals(10, received.get(0).length());
+        assertEquals(navalMachine(NAVAL).convert("ABCDE".repeat(5)),
+                     String.join("", received));
+    }
+
+    /** Checks that a character not in the alphabet fails the stream and
+     *  cancels the subscription upstream. */
+    @Test
+    public void testError() throws InterruptedException {
+        Machine M = navalMachine(NAVAL);
+        EnigmaProcessor processor =
+            new EnigmaProcessor(M, settings -> setUp(M, settings));
+        Collector collector = new Collector(Long.MAX_VALUE);
+        processor.subscribe(collector);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        processor.onNext(CharBuffer.wrap("ABC"));
+        processor.onNext(CharBuffer.wrap("abc"));
+        assertEquals(1, collector.await().size());
+        assertTrue(collector._error instanceof EnigmaException);
+        assertTrue(upstream._cancelled);
+    }
+
+}
@@ -0,0 +1,161 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the EnigmaInputStream and
+ *  EnigmaOutputStream classes.
+ *  @author Evelyn Vo
+ */
+public class EnigmaStreamTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Returns a random permutation of the indices of ALPHA, chosen by
+     *  RANDOM, which is a reflection, with no fixed points, iff
+     *  REFLECTING. */
+    private Permutation randomPermutation(Alphabet alpha, Random random,
+                                          boolean reflecting) {
+        int n = alpha.size();
+        int[] order = new int[n];
+        for (int index = 0; index < n; index += 1) {
+            int other = random.nextInt(index + 1);
+            order[index] = order[other];
+            order[other] = index;
+        }
+        int[] forward = new int[n];
+        for (int index = 0; index < n; index += 1) {
+            if (reflecting) {
+                forward[order[index]] = order[index ^ 1];
+            } else {
+                forward[index] = order[index];
+            }
+        }
+        return new Permutation(forward, alpha);
+    }
+
+    /** Returns a machine over the byte alphabet, set up with rotors wired
+     *  at random from SEED. Machines from the same seed start alike. */
+    private Machine byteMachine(long seed) {
+        Alphabet bytes = Alphabet.bytes();
+        Random random = new Random(seed);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", randomPermutation(bytes, random,
+                                                        true)));
+        rotors.add(new FixedRotor("F", randomPermutation(bytes, random,
+                                                         false)));
+        String[] moving = {"I", "II", "III"};
+        for (String name : moving) {
+            rotors.add(new MovingRotor(name,
+                                       randomPermutation(bytes, random,
+                                                         false),
+                                       String.valueOf((char) (name.length()
+                                                              * 50))));
+        }
+        Machine M = new Machine(bytes, 5, 3, rotors);
+        M.insertRotors(new String[] {"B", "F", "I", "II", "III"});
+        M.setRotors("\u0001\u00FE \u0007");
+        return M;
+    }
+
+    /** Returns SIZE random bytes. */
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Returns the bytes read from IN a byte at a time. */
+    private byte[] readBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        for (int b = in.read(); b != -1; b = in.read()) {
+            result.write(b);
+        }
+        return result.toByteArray();
+    }
+
+    /** Checks that what one stream encrypts, the other decrypts, and that
+     *  a byte at a time and whole arrays give the same result. */
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] plain = randomBytes(50000);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = new EnigmaOutputStream(sink,
+                                                       byteMachine(1))) {
+            out.write(plain, 0, 100);
+            for (int index = 100; index < 200; index += 1) {
+                out.write(plain[index]);
+            }
+            out.write(plain, 200, plain.length - 200);
+        }
+        byte[] cipher = sink.toByteArray();
+        assertEquals(plain.length, cipher.length);
+        assertFalse(Arrays.equals(plain, cipher));
+        InputStream in = new EnigmaInputStream(
+            new ByteArrayInputStream(cipher), byteMachine(1));
+        assertArrayEquals(plain, in.readAllBytes());
+        in = new EnigmaInputStream(new ByteArrayInputStream(cipher),
+                                   byteMachine(1));
+        assertArrayEquals(plain, readBytes(in));
+    }
+
+    /** Checks that skipped bytes still step the machine. */
+    @Test
+    public void testSkip() throws IOException {
+        byte[] plain = randomBytes(3000);
+        InputStream in = new EnigmaInputStream(
+            new ByteArrayInputStream(plain), byteMachine(2));
+        byte[] all = in.readAllBytes();
+        in = new EnigmaInputStream(new ByteArrayInputStream(plain),
+                                   byteMachine(2));
+        assertEquals(1234, in.skip(1234));
+        byte[] rest = in.readAllBytes();
+        assertArrayEquals(Arrays.copyOfRange(all, 1234, all.length), rest);
+    }
+
+    /** Checks that the streams chain with compressing streams. */
+    @Test
+    public void testGzipChain() throws IOException {
+        byte[] plain = randomBytes(20000);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = new EnigmaOutputStream(
+                 new GZIPOutputStream(sink), byteMachine(3))) {
+            out.write(plain);
+        }
+        try (InputStream in = new EnigmaInputStream(
+                 new GZIPInputStream(new ByteArrayInputStream(
+                     sink.toByteArray())), byteMachine(3))) {
+            assertArrayEquals(plain, in.readAllBytes());
+        }
+    }
+
+    /** Checks that a machine whose alphabet is not of bytes is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testNotBytes() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        new EnigmaInputStream(new ByteArrayInputStream(new byte[0]),
+                              new Machine(UPPER, 2, 1, rotors));
+    }
+
+}
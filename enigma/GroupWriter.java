@@ -0,0 +1,110 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer that splits each line written to it into groups of a fixed
+ *  number of characters separated by blanks, as Enigma operators sent
+ *  messages. Characters are copied a group at a time into one reused
+ *  buffer that is handed to the underlying Writer when full, so output
+ *  takes time linear in its length, and the current group is carried
+ *  from one write to the next, so a line may be written in any number
+ *  of pieces. A group width of 0 turns grouping off.
+ *  @author Evelyn Vo
+ */
+class GroupWriter extends Writer {
+
+    /** A writer to OUT of groups of WIDTH characters, or of whole lines if
+     *  WIDTH is 0, buffering CAPACITY characters at a time. */
+    GroupWriter(Writer out, int width, int capacity) {
+        if (width < 0 || capacity < 1) {
+            throw new EnigmaException("Invalid group width or capacity "
+                    + "passed to GroupWriter.");
+        }
+        _out = out;
+        _width = width;
+        _buffer = new char[capacity];
+    }
+
+    /** Adds the LEN characters of CBUF starting at OFF to the current
+     *  line, starting a new group after every width characters. */
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        char[] buffer = _buffer;
+        int width = _width;
+        int end = off + len;
+        while (off < end) {
+            if (_length == buffer.length) {
+                flushBuffer();
+            }
+            if (_group == width && width > 0) {
+                buffer[_length] = ' ';
+                _length += 1;
+                _group = 0;
+                continue;
+            }
+            int run = Math.min(end - off, buffer.length - _length);
+            if (width > 0) {
+                run = Math.min(run, width - _group);
+            }
+            System.arraycopy(cbuf, off, buffer, _length, run);
+            _length += run;
+            _group += run;
+            off += run;
+        }
+    }
+
+    /** Ends the current line with LINE_SEPARATOR; the next character
+     *  written starts a new group. */
+    void endLine() throws IOException {
+        for (int index = 0; index < LINE_SEPARATOR.length(); index += 1) {
+            if (_length == _buffer.length) {
+                flushBuffer();
+            }
+            _buffer[_length] = LINE_SEPARATOR.charAt(index);
+            _length += 1;
+        }
+        _group = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        _out.flush();
+    }
+
+    /** Writes out what I hold and closes the underlying Writer. */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            _out.close();
+        }
+    }
+
+    /** Hands the contents of _buffer to _out. */
+    private void flushBuffer() throws IOException {
+        _out.write(_buffer, 0, _length);
+        _length = 0;
+    }
+
+    /** Ends each output line. */
+    static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /** The destination of my output. */
+    private final Writer _out;
+
+    /** The number of characters in each group, or 0 for no grouping. */
+    private final int _width;
+
+    /** Output not yet written to _out. */
+    private final char[] _buffer;
+
+    /** The number of characters in _buffer. */
+    private int _length;
+
+    /** The number of characters in the last group of the current line. */
+    private int _group;
+
+}
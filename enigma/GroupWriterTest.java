@@ -0,0 +1,74 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the GroupWriter class.
+ *  @author Evelyn Vo
+ */
+public class GroupWriterTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Ends each output line. */
+    private static final String NL = System.lineSeparator();
+
+    /** Returns LINES written through a GroupWriter of groups of WIDTH with
+     *  a buffer of CAPACITY characters, each line in pieces of at most
+     *  PIECE characters. */
+    private String group(int width, int capacity, int piece,
+                         String... lines) throws IOException {
+        StringWriter result = new StringWriter();
+        try (GroupWriter writer = new GroupWriter(result, width, capacity)) {
+            for (String line : lines) {
+                for (int start = 0; start < line.length(); start += piece) {
+                    int end = Math.min(start + piece, line.length());
+                    writer.write(line.toCharArray(), start, end - start);
+                }
+                writer.endLine();
+            }
+        }
+        return result.toString();
+    }
+
+    /** Checks grouping into fives, whatever the buffer and piece sizes. */
+    @Test
+    public void testFives() throws IOException {
+        String expected = "ABCDE FGHIJ KL" + NL + NL + "ABCDE" + NL
+            + "A" + NL;
+        for (int capacity : new int[] {1, 2, 7, 1000}) {
+            for (int piece : new int[] {1, 3, 5, 100}) {
+                assertEquals(msg("testFives", "capacity %d, piece %d",
+                                 capacity, piece),
+                             expected, group(5, capacity, piece,
+                                             "ABCDEFGHIJKL", "", "ABCDE",
+                                             "A"));
+            }
+        }
+    }
+
+    /** Checks other group widths and no grouping at all. */
+    @Test
+    public void testWidths() throws IOException {
+        assertEquals("ABC DEF G" + NL, group(3, 4, 2, "ABCDEFG"));
+        assertEquals("A B C" + NL, group(1, 16, 16, "ABC"));
+        assertEquals("ABCDEFG" + NL + "HI" + NL,
+                     group(0, 3, 2, "ABCDEFG", "HI"));
+    }
+
+    /** Checks that a negative width is rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testBadWidth() {
+        new GroupWriter(new StringWriter(), -1, 16);
+    }
+
+}
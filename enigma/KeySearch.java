@@ -0,0 +1,297 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** An exhaustive search for the settings of a machine under which a
+ *  ciphertext decrypts to a known plaintext, or crib, at a known place.
+ *  Every valid order of the available rotors is tried at every setting of
+ *  the rotors, and a trial is abandoned at the first letter of the crib
+ *  it fails to produce, so most trials take one or two keystrokes.
+ *
+ *  Ring settings are not searched separately: a machine's ring settings
+ *  only offset its rotor settings (see Machine.setRings), so a match with
+ *  rotor settings S and no rings stands for every pair of rotor and ring
+ *  settings whose difference is S, and searching rings as well would
+ *  report each match once for each ring setting.
+ *
+ *  Each order of rotors is compiled once into a MachineSpec, which the
+ *  worker threads share, and each chunk of trials steps its own small
+ *  MachineState, so trials allocate nothing unless the crib lies more
+ *  than MAX_STEPPED_OFFSET letters into the ciphertext.
+ *  @author Evelyn Vo
+ */
+final class KeySearch {
+
+    /** Rotors and settings found by a search. */
+    static final class Match {
+
+        /** A match of the rotors ROTORS, reflector first, at the settings
+         *  SETTINGS. */
+        Match(String[] rotors, String settings) {
+            _rotors = rotors.clone();
+            _settings = settings;
+        }
+
+        /** Returns the name of the rotor in slot SLOT. */
+        String rotor(int slot) {
+            return _rotors[slot];
+        }
+
+        /** Returns the rotor settings, in the form taken by
+         *  Machine.setRotors. */
+        String settings() {
+            return _settings;
+        }
+
+        /** Returns a settings line for this match, without a plugboard. */
+        @Override
+        public String toString() {
+            return "* " + String.join(" ", _rotors) + " " + _settings;
+        }
+
+        /** The rotors, reflector first. */
+        private final String[] _rotors;
+
+        /** The settings of all but the reflector. */
+        private final String _settings;
+    }
+
+    /** A search of the rotors available to M, which is configured but has
+     *  no rotors inserted, for the settings under which the letters of
+     *  CIPHERTEXT from OFFSET on decrypt to CRIB, with the plugboard
+     *  PLUGBOARD, or none if it is null. Whitespace in CIPHERTEXT and CRIB
+     *  is ignored, and OFFSET counts letters. */
+    KeySearch(Machine M, String ciphertext, String crib, int offset,
+              Permutation plugboard) {
+        _alphabet = M.alphabet();
+        _numPawls = M.numPawls();
+        _numRotors = M.numRotors();
+        _available = new ArrayList<>(M.availableRotors());
+        _plugboard = plugboard;
+        int[] cipher = _alphabet.toInts(ciphertext);
+        _crib = _alphabet.toInts(crib);
+        if (_crib.length == 0) {
+            throw new EnigmaException("The crib is empty.");
+        } else if (offset < 0 || offset + _crib.length > cipher.length) {
+            throw new EnigmaException("The crib does not fit in the "
+                                      + "ciphertext.");
+        }
+        _cipher = new int[_crib.length];
+        System.arraycopy(cipher, offset, _cipher, 0, _crib.length);
+        _offset = offset;
+    }
+
+    /** Returns every valid order of my rotors, each as the names of the
+     *  rotors in slot order. */
+    List<String[]> rotorOrders() {
+        return rotorOrders(_available, _numRotors, _numPawls);
+    }
+
+    /** Returns every valid order of the rotors AVAILABLE in a machine
+     *  with NUMROTORS slots and NUMPAWLS pawls, each as the names of the
+     *  rotors in slot order. In a valid order the reflector is in slot 0,
+     *  moving rotors fill the last NUMPAWLS slots and fixed rotors the
+     *  rest, as insertRotors intends. */
+    static List<String[]> rotorOrders(List<Rotor> available, int numRotors,
+                                      int numPawls) {
+        ArrayList<String[]> orders = new ArrayList<>();
+        addOrders(available, numPawls, new Rotor[numRotors], 0, orders);
+        return orders;
+    }
+
+    /** Adds to ORDERS every valid order of the rotors AVAILABLE, for
+     *  NUMPAWLS pawls, whose first SLOT slots are SLOTS. */
+    private static void addOrders(List<Rotor> available, int numPawls,
+                                  Rotor[] slots, int slot,
+                                  List<String[]> orders) {
+        int numRotors = slots.length;
+        if (slot == numRotors) {
+            String[] names = new String[numRotors];
+            for (int index = 0; index < numRotors; index += 1) {
+                names[index] = slots[index].name();
+            }
+            orders.add(names);
+            return;
+        }
+        boolean moving = slot >= numRotors - numPawls;
+        for (Rotor rotor : available) {
+            if (rotor.reflecting() != (slot == 0)
+                || rotor.rotates() != moving
+                || inUse(slots, slot, rotor)) {
+                continue;
+            }
+            slots[slot] = rotor;
+            addOrders(available, numPawls, slots, slot + 1, orders);
+        }
+    }
+
+    /** Returns true iff ROTOR is one of the first COUNT of SLOTS. */
+    private static boolean inUse(Rotor[] slots, int count, Rotor rotor) {
+        for (int index = 0; index < count; index += 1) {
+            if (slots[index] == rotor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the number of settings of the rotors of one order. */
+    long settingsPerOrder() {
+        long count = 1;
+        for (int slot = 1; slot < _numRotors; slot += 1) {
+            count = Math.multiplyExact(count, _alphabet.size());
+        }
+        return count;
+    }
+
+    /** Runs the search on the threads of POOL and returns its matches, in
+     *  order of rotor order and then of settings. Reports the number of
+     *  trials and the time taken through trials() and nanos(). */
+    List<Match> search(ForkJoinPool pool) {
+        long start = System.nanoTime();
+        List<String[]> orders = rotorOrders();
+        long perOrder = settingsPerOrder();
+        long trials = Math.multiplyExact(perOrder, orders.size());
+        long perChunk = Math.max(MIN_CHUNK, trials
+                                 / (pool.getParallelism()
+                                    * CHUNKS_PER_THREAD));
+        ConcurrentLinkedQueue<long[]> found = new ConcurrentLinkedQueue<>();
+        ArrayList<ForkJoinTask<?>> chunks = new ArrayList<>();
+        for (int order = 0; order < orders.size(); order += 1) {
+            MachineSpec spec =
+                new MachineSpec(_alphabet, _numPawls, _available,
+                                orders.get(order), "", _plugboard);
+            long orderIndex = order;
+            for (long from = 0; from < perOrder; from += perChunk) {
+                long first = from;
+                long last = Math.min(perOrder, from + perChunk);
+                chunks.add(pool.submit(() ->
+                    searchChunk(spec, orderIndex, first, last, found)));
+            }
+        }
+        for (ForkJoinTask<?> chunk : chunks) {
+            chunk.join();
+        }
+        ArrayList<long[]> sorted = new ArrayList<>(found);
+        sorted.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                    : Long.compare(a[1], b[1]));
+        ArrayList<Match> matches = new ArrayList<>();
+        for (long[] match : sorted) {
+            int[] pos = new int[_numRotors];
+            decode(match[1], pos);
+            char[] settings = new char[_numRotors - 1];
+            for (int slot = 1; slot < _numRotors; slot += 1) {
+                settings[slot - 1] = _alphabet.toChar(pos[slot]);
+            }
+            matches.add(new Match(orders.get((int) match[0]),
+                                  new String(settings)));
+        }
+        _trials = trials;
+        _nanos = System.nanoTime() - start;
+        return matches;
+    }
+
+    /** Tries the settings numbered FIRST to LAST - 1 of the rotor order
+     *  numbered ORDER, compiled into SPEC, adding the order and settings
+     *  numbers of each that matches to FOUND. */
+    private void searchChunk(MachineSpec spec, long order, long first,
+                             long last, ConcurrentLinkedQueue<long[]> found) {
+        int n = _alphabet.size();
+        int[] start = new int[_numRotors];
+        decode(first, start);
+        MachineState state = new MachineState(start);
+        int[] pos = state.positions();
+        int[] cipher = _cipher;
+        int[] crib = _crib;
+        for (long trial = first; trial < last; trial += 1) {
+            System.arraycopy(start, 0, pos, 0, start.length);
+            if (_offset > MAX_STEPPED_OFFSET) {
+                spec.seek(state, _offset);
+            } else if (_offset > 0) {
+                spec.step(state, _offset);
+            }
+            int index = 0;
+            while (index < crib.length
+                   && spec.convert(state, cipher[index]) == crib[index]) {
+                index += 1;
+            }
+            if (index == crib.length) {
+                found.add(new long[] {order, trial});
+            }
+            for (int slot = _numRotors - 1; slot > 0; slot -= 1) {
+                start[slot] += 1;
+                if (start[slot] < n) {
+                    break;
+                }
+                start[slot] = 0;
+            }
+        }
+    }
+
+    /** Sets POS[1 ..] to the settings numbered TRIAL, in which the last
+     *  slot varies fastest. */
+    private void decode(long trial, int[] pos) {
+        int n = _alphabet.size();
+        for (int slot = _numRotors - 1; slot > 0; slot -= 1) {
+            pos[slot] = (int) (trial % n);
+            trial /= n;
+        }
+    }
+
+    /** Returns the number of trials made by the last search. */
+    long trials() {
+        return _trials;
+    }
+
+    /** Returns the time taken by the last search, in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** The fewest trials in a chunk of work. */
+    private static final int MIN_CHUNK = 1 << 12;
+
+    /** The number of chunks search aims to give each thread. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The longest offset a trial reaches by stepping its settings one
+     *  keystroke at a time, allocating nothing; seek, which allocates,
+     *  is quicker beyond it. */
+    static final int MAX_STEPPED_OFFSET = 128;
+
+    /** The alphabet of the machine searched. */
+    private final Alphabet _alphabet;
+
+    /** Its number of pawls. */
+    private final int _numPawls;
+
+    /** Its number of slots. */
+    private final int _numRotors;
+
+    /** The rotors available to it. */
+    private final ArrayList<Rotor> _available;
+
+    /** Its plugboard, or null. */
+    private final Permutation _plugboard;
+
+    /** The letters of the ciphertext under the crib. */
+    private final int[] _cipher;
+
+    /** The letters of the crib. */
+    private final int[] _crib;
+
+    /** The number of letters of ciphertext before the crib. */
+    private final int _offset;
+
+    /** The number of trials made by the last search. */
+    private long _trials;
+
+    /** The time taken by the last search. */
+    private long _nanos;
+
+}
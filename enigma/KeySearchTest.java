@@ -0,0 +1,85 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the KeySearch class.
+ *  @author Evelyn Vo
+ */
+public class KeySearchTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** Checks that the valid orders keep the reflector first and moving
+     *  rotors to the right. */
+    @Test
+    public void testRotorOrders() {
+        KeySearch search = new KeySearch(navalMachine(4, NAVAL_ROTORS), "ABC",
+                                         "A", 0, null);
+        List<String[]> orders = search.rotorOrders();
+        assertEquals(6, orders.size());
+        for (String[] order : orders) {
+            assertEquals("B", order[0]);
+        }
+        assertEquals(26 * 26 * 26, search.settingsPerOrder());
+    }
+
+    /** Checks that a search finds the settings a message was encrypted
+     *  with, whether the crib starts the message, lies a little way into
+     *  it or lies far into it, on one thread or several. */
+    @Test
+    public void testSearch() {
+        String[] rotors = {"B", "IV", "I", "III"};
+        String plain = "WEATHERREPORTFORTHENORTHSEA";
+        String cipher = navalEncrypt(rotors, "QEV", "", plain);
+        for (int parallelism : new int[] {1, 3}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                KeySearch search =
+                    new KeySearch(navalMachine(4, NAVAL_ROTORS), cipher,
+                                  "WEATHERREPORT", 0, null);
+                List<KeySearch.Match> matches = search.search(pool);
+                assertEquals(1, matches.size());
+                assertEquals("* B IV I III QEV", matches.get(0).toString());
+                assertEquals(6 * 26 * 26 * 26, search.trials());
+            } finally {
+                pool.shutdown();
+            }
+        }
+        KeySearch search = new KeySearch(navalMachine(4, NAVAL_ROTORS), cipher,
+                                         "NORTH SEA", 19, null);
+        List<KeySearch.Match> matches =
+            search.search(ForkJoinPool.commonPool());
+        assertEquals(1, matches.size());
+        assertEquals("QEV", matches.get(0).settings());
+        StringBuilder longPlain = new StringBuilder();
+        while (longPlain.length() <= KeySearch.MAX_STEPPED_OFFSET) {
+            longPlain.append(plain);
+        }
+        int offset = longPlain.length();
+        longPlain.append("SHIPPINGFORECAST");
+        search = new KeySearch(navalMachine(4, NAVAL_ROTORS),
+                               navalEncrypt(rotors, "QEV", "",
+                                            longPlain.toString()),
+                               "SHIPPING FORECAST", offset, null);
+        matches = search.search(ForkJoinPool.commonPool());
+        assertEquals(1, matches.size());
+        assertEquals("QEV", matches.get(0).settings());
+    }
+
+    /** Checks that a crib longer than the ciphertext is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testCribTooLong() {
+        new KeySearch(navalMachine(4, NAVAL_ROTORS), "ABC", "ABCD", 0, null);
+    }
+
+}
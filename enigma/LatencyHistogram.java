@@ -0,0 +1,91 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A record of durations, in nanoseconds, from which percentiles can be
+ *  read. Durations are counted in buckets whose widths grow with their
+ *  values, SUB_BUCKETS to each power of two, so a percentile is exact
+ *  below 2 * SUB_BUCKETS ns and otherwise high by less than one part in
+ *  SUB_BUCKETS, and the record takes the same small space however many
+ *  durations it holds. Any number of threads may record at once.
+ *  @author Evelyn Vo
+ */
+class LatencyHistogram {
+
+    /** Records one duration of NANOS nanoseconds, which must not be
+     *  negative. */
+    void record(long nanos) {
+        _counts.incrementAndGet(bucket(nanos));
+        _count.incrementAndGet();
+        _max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Returns the number of durations recorded. */
+    long count() {
+        return _count.get();
+    }
+
+    /** Returns the longest duration recorded, or 0 if there are none. */
+    long max() {
+        return _max.get();
+    }
+
+    /** Returns (an upper bound on) the duration that P percent of the
+     *  durations recorded do not exceed, where 0 < P <= 100, or 0 if
+     *  none have been recorded. */
+    long percentile(double p) {
+        long count = count();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS; index += 1) {
+            seen += _counts.get(index);
+            if (seen >= rank) {
+                return Math.min(highest(index), max());
+            }
+        }
+        return max();
+    }
+
+    /** Returns the bucket counting durations of NANOS. */
+    static int bucket(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /** Returns the longest duration counted in bucket INDEX. */
+    static long highest(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /** The base-2 logarithm of SUB_BUCKETS. */
+    private static final int SUB_BITS = 4;
+
+    /** The number of buckets to each power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** The number of buckets, enough for any non-negative long. */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /** _counts[k] is the number of durations counted in bucket k. */
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+
+    /** The number of durations recorded. */
+    private final AtomicLong _count = new AtomicLong();
+
+    /** The longest duration recorded. */
+    private final AtomicLong _max = new AtomicLong();
+
+}
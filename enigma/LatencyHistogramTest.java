@@ -0,0 +1,57 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the LatencyHistogram class.
+ *  @author Evelyn Vo
+ */
+public class LatencyHistogramTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Checks that every duration falls in a bucket that holds it and
+     *  that buckets are less than one part in sixteen wide. */
+    @Test
+    public void testBuckets() {
+        long[] durations = {0, 1, 31, 32, 33, 1000, 123456789,
+                            Long.MAX_VALUE};
+        for (long nanos : durations) {
+            int bucket = LatencyHistogram.bucket(nanos);
+            long highest = LatencyHistogram.highest(bucket);
+            assertTrue(msg("testBuckets", "%d above bucket", nanos),
+                       nanos <= highest);
+            assertTrue(msg("testBuckets", "%d below bucket", nanos),
+                       bucket == 0
+                       || LatencyHistogram.highest(bucket - 1) < nanos);
+            assertTrue(msg("testBuckets", "bucket of %d too wide", nanos),
+                       highest - nanos <= nanos / 16);
+        }
+    }
+
+    /** Checks percentiles of the durations 1 to 1000 microseconds. */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram latencies = new LatencyHistogram();
+        assertEquals(0, latencies.percentile(50));
+        for (int micros = 1000; micros >= 1; micros -= 1) {
+            latencies.record(micros * 1000L);
+        }
+        assertEquals(1000, latencies.count());
+        assertEquals(1000000, latencies.max());
+        double[] percents = {50, 90, 99, 100};
+        for (double p : percents) {
+            long expected = (long) (p * 10) * 1000;
+            long actual = latencies.percentile(p);
+            assertTrue(msg("testPercentiles", "p%.0f is %d", p, actual),
+                       actual >= expected && actual <= expected * 17 / 16);
+        }
+    }
+
+}
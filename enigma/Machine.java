@@ -1,8 +1,18 @@
 package enigma;
 
+import java.nio.CharBuffer;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import java.util.function.IntUnaryOperator;
 
 import static enigma.EnigmaException.*;
 
@@ -35,8 +45,10 @@ class Machine {
         _numRotors = numRotors;
         _numPawls = pawls;
         _allRotors = (ArrayList<Rotor>) allRotors;
+        _available = _allRotors;
         _hasPlugboard = false;
         _hasRings = false;
+        loadSlots();
     }
 
     /** Checks that allRotors is not empty, that every rotor shares
@@ -65,6 +77,29 @@ class Machine {
         }
     }
 
+    /** Returns a new machine with my alphabet, slots and pawls whose
+     *  available rotors are copies of mine at their 0 settings, so that
+     *  it may be set up and run independently of me, in another thread,
+     *  without the configuration being parsed again. */
+    Machine copy() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (Rotor rotor : _available) {
+            rotors.add(rotor.copy());
+        }
+        return new Machine(_alphabet, _numRotors, _numPawls, rotors);
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the rotors available to me, or once rotors have been
+     *  inserted, those in my slots. The list must not be modified. */
+    List<Rotor> availableRotors() {
+        return Collections.unmodifiableList(_allRotors);
+    }
+
     /** Return the number of rotor slots I have. */
     int numRotors() {
         return _numRotors;
@@ -81,7 +116,9 @@ class Machine {
      *  existing known rotors and orders them. rotors[rotors.length - 1]
      *  identifies fast moving rotor that always moves.
      *  rotors[0] names the reflector.
-     *  Initially, all rotors are set at their 0 setting. */
+     *  Initially, all rotors are set at their 0 setting. Rotors are
+     *  always chosen from those I was built with, whatever rotors an
+     *  earlier call inserted. */
     void insertRotors(String[] rotors) {
         if (rotors.length != numRotors()) {
             throw new EnigmaException("Incorrect number of rotors "
@@ -98,8 +135,8 @@ class Machine {
                     && currRotor instanceof FixedRotor) {
                 throw new EnigmaException("Fixed rot. before moving rot.");
             }
-            for (int rotNum = 0; rotNum < _allRotors.size(); rotNum += 1) {
-                Rotor selectRotor = _allRotors.get(rotNum);
+            for (int rotNum = 0; rotNum < _available.size(); rotNum += 1) {
+                Rotor selectRotor = _available.get(rotNum);
                 if (selectRotor.name().equals(rotors[index])) {
                     currRotor = selectRotor;
                     break;
@@ -141,6 +178,7 @@ class Machine {
             throw new EnigmaException("Cannot have 0 reflectors.");
         }
         _allRotors = orderedRotors;
+        loadSlots();
     }
 
     /** Set my rotors according to SETTING, which must be a string of
@@ -171,6 +209,49 @@ class Machine {
         _hasPlugboard = true;
     }
 
+    /** Removes my plugboard, if I have one. */
+    void clearPlugboard() {
+        _plugboard = null;
+        _hasPlugboard = false;
+    }
+
+    /** Returns the rotors in my slots, their current settings and my
+     *  plugboard, compiled so that restore can put them back. */
+    MachineSettings settings() {
+        int[] positions = new int[_slots.length];
+        for (int index = 0; index < _slots.length; index += 1) {
+            positions[index] = _slots[index].setting();
+        }
+        return new MachineSettings(_slots, _odometer, positions,
+                                   _hasPlugboard ? _plugboard : null);
+    }
+
+    /** Puts SETTINGS, which must have been returned by my settings
+     *  method, back into my slots, rotors and plugboard. Takes time
+     *  proportional to the number of slots, and allocates nothing unless
+     *  the rotors in my slots change. */
+    void restore(MachineSettings settings) {
+        int n = settings.numRotors();
+        boolean sameRotors = n == _slots.length;
+        for (int index = 0; sameRotors && index < n; index += 1) {
+            sameRotors = _slots[index] == settings.rotor(index);
+        }
+        if (!sameRotors) {
+            _allRotors = new ArrayList<>(n);
+            for (int index = 0; index < n; index += 1) {
+                _allRotors.add(settings.rotor(index));
+            }
+            _slots = _allRotors.toArray(new Rotor[n]);
+            _positions = new int[n];
+            _odometer = settings.odometer();
+        }
+        for (int index = 0; index < n; index += 1) {
+            _slots[index].set(settings.setting(index));
+        }
+        _plugboard = settings.plugboard();
+        _hasPlugboard = _plugboard != null;
+    }
+
     /** Sets the rings to SETTINGS. */
     void setRings(String settings) {
         if (settings.length() != numRotors() - 1) {
@@ -184,6 +265,49 @@ class Machine {
         _hasRings = true;
     }
 
+    /** Compile every rotor currently in my slots, or every rotor
+     *  available to me if none have been inserted (see Rotor.compile),
+     *  and return the total number of bytes their tables occupy. Copies
+     *  of me share the compiled tables. */
+    long compileRotors() {
+        long bytes = 0;
+        for (Rotor rotor : _allRotors) {
+            rotor.compile();
+            bytes += rotor.tableBytes();
+        }
+        return bytes;
+    }
+
+    /** Returns a MachineKernel compiled from my current rotors, rotor
+     *  settings and plugboard. */
+    MachineKernel kernel() {
+        return new MachineKernel(_alphabet, _slots,
+                                 _hasPlugboard ? _plugboard : null);
+    }
+
+    /** Returns an immutable MachineSpec of my alphabet, the rotors in my
+     *  slots and my plugboard. My ring settings are already folded into
+     *  my rotor settings, so the spec has none; state() gives my current
+     *  settings. */
+    MachineSpec spec() {
+        String[] names = new String[_slots.length];
+        for (int index = 0; index < _slots.length; index += 1) {
+            names[index] = _slots[index].name();
+        }
+        return new MachineSpec(_alphabet, _numPawls, Arrays.asList(_slots),
+                               names, "", _hasPlugboard ? _plugboard : null);
+    }
+
+    /** Returns a new MachineState holding the current settings of the
+     *  rotors in my slots, for use with spec(). */
+    MachineState state() {
+        int[] positions = new int[_slots.length];
+        for (int index = 0; index < _slots.length; index += 1) {
+            positions[index] = _slots[index].setting();
+        }
+        return new MachineState(positions);
+    }
+
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
         int r = p % _alphabet.size();
@@ -202,18 +326,23 @@ class Machine {
             throw new EnigmaException("Incorrect character "
                     + "value sent to Machine convert(...).");
         }
+        return scramble(c);
+    }
+
+    /** Returns the result of converting C, which must be in the range
+     *  0..alphabet size - 1, after first advancing the machine. */
+    private int scramble(int c) {
         int newC = c;
         if (_hasPlugboard) {
             newC = _plugboard.permute(c);
         }
         advanceMachine();
-        for (int index = _allRotors.size() - 1; index >= 0; index -= 1) {
-            Rotor chosRotor = _allRotors.get(index);
-            newC = chosRotor.convertForward(newC);
+        Rotor[] slots = _slots;
+        for (int index = slots.length - 1; index >= 0; index -= 1) {
+            newC = slots[index].convertForward(newC);
         }
-        for (int index = 1; index < _allRotors.size(); index += 1) {
-            Rotor chosRotor = _allRotors.get(index);
-            newC = chosRotor.convertBackward(newC);
+        for (int index = 1; index < slots.length; index += 1) {
+            newC = slots[index].convertBackward(newC);
         }
         if (_hasPlugboard) {
             newC = _plugboard.invert(newC);
@@ -221,33 +350,77 @@ class Machine {
         return newC;
     }
 
-    /** Advances the machine. */
-    private void advanceMachine() {
-        ArrayList<Rotor> canAdvance = new ArrayList<Rotor>();
-        for (int index = _allRotors.size() - 1; index >= 0; index -= 1) {
-            Rotor currRotor = _allRotors.get(index);
-            if (index == _allRotors.size() - 1) {
-                canAdvance.add(currRotor);
-            } else if (currRotor.atNotch()) {
-                Rotor nextRotor = _allRotors.get(index - 1);
-                if (nextRotor.rotates()) {
-                    if (!canAdvance.contains(currRotor)) {
-                        currRotor.advance();
-                    }
-                    if (!canAdvance.contains(nextRotor)) {
-                        nextRotor.advance();
-                    }
-                }
-            } else {
-                Rotor prevRotor = _allRotors.get(index + 1);
-                if (prevRotor.atNotch()) {
-                    currRotor.advance();
-                }
+    /** Advances the machine. Steps a copy of the rotor settings held in
+     *  the primitive _positions array with my Odometer and writes back
+     *  only the rotors that moved, so no memory is allocated per
+     *  keystroke. Package-private for the benchmarks. */
+    void advanceMachine() {
+        int[] pos = _positions;
+        for (int index = 0; index < _slots.length; index += 1) {
+            pos[index] = _slots[index].setting();
+        }
+        _odometer.step(pos);
+        for (int index = 0; index < _slots.length; index += 1) {
+            if (pos[index] != _slots[index].setting()) {
+                _slots[index].set(pos[index]);
+            }
+        }
+    }
+
+    /** Advances the machine by N keystrokes without converting anything,
+     *  leaving the rotors as N calls of convert(int) would. Takes time
+     *  proportional to the number of rotors rather than to N (see
+     *  Odometer.seek). */
+    void seek(long n) {
+        int[] pos = positionsAt(n);
+        for (int index = 0; index < _slots.length; index += 1) {
+            if (pos[index] != _slots[index].setting()) {
+                _slots[index].set(pos[index]);
             }
         }
-        for (int index = 0; index < canAdvance.size(); index += 1) {
-            canAdvance.get(index).advance();
+    }
+
+    /** Returns the settings my rotors would have after N more keystrokes,
+     *  in the form accepted by setRotors, without changing them. */
+    String positionAt(long n) {
+        int[] pos = positionsAt(n);
+        char[] setting = new char[pos.length - 1];
+        for (int index = 1; index < pos.length; index += 1) {
+            setting[index - 1] = _alphabet.toChar(pos[index]);
+        }
+        return new String(setting);
+    }
+
+    /** Returns the settings of each of my slots after N more keystrokes. */
+    private int[] positionsAt(long n) {
+        int[] pos = new int[_slots.length];
+        for (int index = 0; index < _slots.length; index += 1) {
+            pos[index] = _slots[index].setting();
         }
+        _odometer.seek(pos, n);
+        return pos;
+    }
+
+    /** Return my Odometer, the pawl and notch structure of my rotors. */
+    Odometer odometer() {
+        return _odometer;
+    }
+
+    /** Loads _slots and the stepping tables from _allRotors. */
+    private void loadSlots() {
+        int n = _allRotors.size();
+        _slots = _allRotors.toArray(new Rotor[n]);
+        _positions = new int[n];
+        boolean[] rotates = new boolean[n];
+        boolean[][] notchTables = new boolean[n][];
+        for (int index = 0; index < n; index += 1) {
+            Rotor rotor = _slots[index];
+            rotates[index] = rotor.rotates();
+            if (rotor instanceof MovingRotor) {
+                notchTables[index] = ((MovingRotor) rotor).notchTable();
+            }
+        }
+        _odometer = new Odometer(_alphabet.size(), rotates, notchTables);
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
@@ -256,21 +429,203 @@ class Machine {
         if (msg.equals("")) {
             return msg;
         }
-        String encodedMsg = "";
-        for (int index = 0; index < msg.length(); index += 1) {
-            char ch = msg.charAt(index);
-            if (!Character.isWhitespace(ch)) {
-                if (!_alphabet.contains(ch)) {
-                    throw new EnigmaException("Msg sent to "
-                             + "convert(...) has characters not in alphabet.");
-                }
-                int letterIndex = _alphabet.toInt(ch);
-                encodedMsg += _alphabet.toChar(convert(letterIndex));
+        char[] in = msg.toCharArray();
+        char[] out = new char[in.length];
+        int written = convert(in, 0, in.length, out, 0);
+        return new String(out, 0, written);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF, writing the
+     *  result into OUT starting at OUTOFF and updating the state of the
+     *  rotors accordingly. As for convert(String), whitespace other than
+     *  newlines is dropped and newlines are copied without stepping the
+     *  rotors, so at most LEN characters are written. Returns the number
+     *  of characters written. If IN holds a character outside my alphabet,
+     *  the characters before it have already been converted and written
+     *  when the exception is thrown. */
+    int convert(char[] in, int off, int len, char[] out, int outOff) {
+        return convert(_alphabet, this::scramble, in, off, len, out, outOff);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF, as convert(char[], int, int, char[], int) describes,
+     *  where ALPHA is the alphabet and SCRAMBLE converts the index of a
+     *  letter after advancing the rotors. This is the only loop over text:
+     *  MachineKernel and MachineSpec convert through it too. Returns the
+     *  number of characters written. */
+    static int convert(Alphabet alpha, IntUnaryOperator scramble, char[] in,
+                       int off, int len, char[] out, int outOff) {
+        if (off < 0 || len < 0 || off + len > in.length
+                || outOff < 0 || outOff + len > out.length) {
+            throw new EnigmaException("Invalid bounds passed to "
+                    + "convert(...).");
+        }
+        int o = outOff;
+        for (int index = off; index < off + len; index += 1) {
+            char ch = in[index];
+            int letterIndex = alpha.toInt(ch);
+            if (letterIndex != -1) {
+                out[o] = alpha.toChar(scramble.applyAsInt(letterIndex));
+                o += 1;
+            } else if (ch == '\n') {
+                out[o] = ch;
+                o += 1;
+            } else if (!Character.isWhitespace(ch)) {
+                throw new EnigmaException("Msg sent to "
+                        + "convert(...) has characters not in alphabet.");
+            }
+        }
+        return o - outOff;
+    }
+
+    /** Converts the LEN bytes of IN starting at OFF, writing the result
+     *  into OUT starting at OUTOFF and updating the state of the rotors
+     *  accordingly. Each byte stands for the character of my alphabet
+     *  whose index is its unsigned value, so my alphabet must have 256
+     *  characters (see Alphabet.bytes), and every byte is converted,
+     *  whitespace or not. IN and OUT may be the same array, and the
+     *  ranges may coincide. */
+    void convert(byte[] in, int off, int len, byte[] out, int outOff) {
+        if (off < 0 || len < 0 || off + len > in.length
+                || outOff < 0 || outOff + len > out.length) {
+            throw new EnigmaException("Invalid bounds passed to "
+                    + "Machine convert(...).");
+        } else if (_alphabet.size() != BYTE_VALUES) {
+            throw new EnigmaException("Bytes can only be converted with "
+                    + "an alphabet of " + BYTE_VALUES + " characters.");
+        }
+        for (int index = 0; index < len; index += 1) {
+            out[outOff + index] = (byte) scramble(in[off + index] & 0xFF);
+        }
+    }
+
+    /** Converts the remaining characters of IN into OUT as for
+     *  convert(char[], int, int, char[], int), advancing the position of
+     *  IN to its limit and that of OUT past the characters written. OUT
+     *  must have at least IN.remaining() characters remaining. Returns the
+     *  number of characters written. */
+    int convert(CharBuffer in, CharBuffer out) {
+        int len = in.remaining();
+        if (out.remaining() < len) {
+            throw new EnigmaException("Output buffer too small for "
+                    + "Machine convert(...).");
+        }
+        int written;
+        if (in.hasArray() && out.hasArray()) {
+            written = convert(in.array(), in.arrayOffset() + in.position(),
+                              len, out.array(),
+                              out.arrayOffset() + out.position());
+            in.position(in.limit());
+            out.position(out.position() + written);
+        } else {
+            char[] chunk = new char[Math.min(len, BULK_CHUNK)];
+            char[] result = new char[chunk.length];
+            written = 0;
+            while (in.hasRemaining()) {
+                int n = Math.min(in.remaining(), chunk.length);
+                in.get(chunk, 0, n);
+                int m = convert(chunk, 0, n, result, 0);
+                out.put(result, 0, m);
+                written += m;
+            }
+        }
+        return written;
+    }
+
+    /** Returns the conversion of the remaining characters of IN as a new
+     *  buffer, flipped for reading, advancing the position of IN to its
+     *  limit. */
+    CharBuffer convert(CharBuffer in) {
+        CharBuffer out = CharBuffer.allocate(in.remaining());
+        convert(in, out);
+        out.flip();
+        return out;
+    }
+
+    /** Returns the encoding/decoding of MSG, as for convert(String), but
+     *  converting pieces of it concurrently on POOL (see
+     *  convertParallel(char[], int, int, char[], int, ForkJoinPool)). */
+    String convertParallel(String msg, ForkJoinPool pool) {
+        char[] in = msg.toCharArray();
+        char[] out = new char[in.length];
+        int written = convertParallel(in, 0, in.length, out, 0, pool);
+        return new String(out, 0, written);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF with the same result, and leaving my rotors in the same
+     *  settings, as convert(IN, OFF, LEN, OUT, OUTOFF), using the threads
+     *  of POOL, which the caller keeps for as many calls as it likes. IN
+     *  is split into chunks holding equal numbers of characters of my
+     *  alphabet, a few for each thread of POOL; the settings each chunk
+     *  starts from are found with seek, and each is converted by its own
+     *  MachineKernel. Short messages are converted serially. If IN holds
+     *  a character outside my alphabet, nothing is converted. Returns the
+     *  number of characters written. */
+    int convertParallel(char[] in, int off, int len, char[] out, int outOff,
+                        ForkJoinPool pool) {
+        if (off < 0 || len < 0 || off + len > in.length
+                || outOff < 0 || outOff + len > out.length) {
+            throw new EnigmaException("Invalid bounds passed to "
+                    + "Machine convertParallel(...).");
+        }
+        int parallelism = pool.getParallelism();
+        Alphabet alph = _alphabet;
+        long letters = 0;
+        for (int index = off; index < off + len; index += 1) {
+            char ch = in[index];
+            if (alph.toInt(ch) != -1) {
+                letters += 1;
+            } else if (ch != '\n' && !Character.isWhitespace(ch)) {
+                throw new EnigmaException("Msg sent to "
+                        + "convert(...) has characters not in alphabet.");
+            }
+        }
+        long perChunk = Math.max(MIN_PARALLEL_CHUNK,
+                                 letters / (parallelism * CHUNKS_PER_THREAD));
+        if (letters <= perChunk) {
+            return convert(in, off, len, out, outOff);
+        }
+
+        ArrayList<ForkJoinTask<Integer>> chunks = new ArrayList<>();
+        int start = off, o = outOff, written = 0;
+        long keystrokes = 0, count = 0;
+        for (int index = off; index < off + len; index += 1) {
+            char ch = in[index];
+            if (alph.toInt(ch) != -1) {
+                count += 1;
+                written += 1;
             } else if (ch == '\n') {
-                encodedMsg += ch;
+                written += 1;
+            }
+            if (count == perChunk || index == off + len - 1) {
+                MachineKernel kernel = kernelAt(keystrokes);
+                int from = start, n = index + 1 - start, to = o;
+                chunks.add(pool.submit(
+                    () -> kernel.convert(in, from, n, out, to)));
+                keystrokes += count;
+                o += written;
+                start = index + 1;
+                count = 0;
+                written = 0;
             }
         }
-        return encodedMsg;
+        for (ForkJoinTask<Integer> chunk : chunks) {
+            chunk.join();
+        }
+        seek(letters);
+        return o - outOff;
+    }
+
+    /** Returns a MachineKernel compiled from my rotors at the settings
+     *  they would have after N more keystrokes. */
+    private MachineKernel kernelAt(long n) {
+        MachineKernel kernel = kernel();
+        int[] pos = positionsAt(n);
+        for (int index = 0; index < pos.length; index += 1) {
+            kernel.set(index, pos[index]);
+        }
+        return kernel;
     }
 
     /** Returns the current settings of the rotors for this machine. */
@@ -299,6 +654,34 @@ class Machine {
     /** A collection of all the rotors in the machine. */
     private ArrayList<Rotor> _allRotors;
 
+    /** The rotors I was built with, from which insertRotors chooses. */
+    private final ArrayList<Rotor> _available;
+
+    /** The number of distinct byte values, and so the size of the
+     *  alphabet of a machine that converts bytes. */
+    static final int BYTE_VALUES = 256;
+
+    /** Number of characters copied at a time when converting buffers that
+     *  are not backed by arrays. */
+    private static final int BULK_CHUNK = 8192;
+
+    /** The fewest characters of my alphabet convertParallel puts in a
+     *  chunk; shorter messages are converted serially. */
+    static final int MIN_PARALLEL_CHUNK = 1 << 16;
+
+    /** The number of chunks convertParallel aims to give each thread, so
+     *  that threads that finish early can take up the slack. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The rotors of _allRotors, in slot order. */
+    private Rotor[] _slots;
+
+    /** Scratch copy of the settings of _slots used while stepping. */
+    private int[] _positions;
+
+    /** The pawl and notch structure of _slots. */
+    private Odometer _odometer;
+
     /** The plugboard of the machine, which is called
      * before conversion and after conversion. */
     private Permutation _plugboard;
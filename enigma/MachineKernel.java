@@ -0,0 +1,303 @@
+package enigma;
+
+/** A flattened encryption engine compiled from a fully configured Machine.
+ *  The plugboard, rotor wirings, notches and reflector are copied into a
+ *  few final int and boolean arrays, and each keystroke runs a fixed
+ *  sequence of table lookups over them with no virtual calls. A kernel
+ *  starts from the rotor settings its Machine had when it was compiled
+ *  and from then on keeps its own state: converting through the kernel
+ *  does not move the Machine's rotors, and changes to the Machine do not
+ *  affect the kernel.
+ *  @author Evelyn Vo
+ */
+final class MachineKernel {
+
+    /** A kernel over alphabet ALPHA for the rotors in SLOTS (SLOTS[0] is
+     *  the reflector), in their current settings, with plugboard PLUGBOARD
+     *  (null if there is none). */
+    MachineKernel(Alphabet alpha, Rotor[] slots, Permutation plugboard) {
+        int n = alpha.size();
+        int numSlots = slots.length;
+        _alphabet = alpha;
+        _size = n;
+        _last = numSlots - 1;
+        _plugForward = new int[n];
+        _plugInverse = new int[n];
+        for (int index = 0; index < n; index += 1) {
+            _plugForward[index] = index;
+            _plugInverse[index] = index;
+        }
+        if (plugboard != null) {
+            System.arraycopy(plugboard.forwardTable(), 0, _plugForward, 0, n);
+            System.arraycopy(plugboard.inverseTable(), 0, _plugInverse, 0, n);
+        }
+        _mod = new int[2 * n];
+        for (int index = 0; index < _mod.length; index += 1) {
+            _mod[index] = index % n;
+        }
+        _forward = new int[numSlots * 2 * n];
+        _backward = new int[numSlots * 2 * n];
+        _notches = new boolean[numSlots * n];
+        _rotates = new boolean[numSlots];
+        _positions = new int[numSlots];
+        _core = new int[n];
+        _slow = new int[n];
+        for (int slot = 0; slot < numSlots; slot += 1) {
+            Rotor rotor = slots[slot];
+            int[] forward = rotor.permutation().forwardTable();
+            int[] inverse = rotor.permutation().inverseTable();
+            for (int contact = 0; contact < 2 * n; contact += 1) {
+                _forward[slot * 2 * n + contact] = forward[contact % n];
+                _backward[slot * 2 * n + contact] = inverse[contact % n];
+            }
+            if (rotor instanceof MovingRotor) {
+                boolean[] notches = ((MovingRotor) rotor).notchTable();
+                System.arraycopy(notches, 0, _notches, slot * n, n);
+            }
+            _rotates[slot] = rotor.rotates();
+            _positions[slot] = rotor.setting();
+        }
+        updateEngaged();
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _last + 1;
+    }
+
+    /** Return the current setting of the rotor in slot SLOT. */
+    int setting(int slot) {
+        return _positions[slot];
+    }
+
+    /** Set the rotor in slot SLOT to setting POSN, which must be in the
+     *  range 0..alphabet size - 1. */
+    void set(int slot, int posn) {
+        if (posn < 0 || posn >= _size) {
+            throw new EnigmaException("Invalid rotor position "
+                    + "passed to MachineKernel.");
+        }
+        _positions[slot] = posn;
+        moved(slot);
+        updateEngaged();
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1), after first advancing
+     *  the rotors. Identical to Machine.convert(int). */
+    int convert(int c) {
+        if (c < 0 || c >= _size) {
+            throw new EnigmaException("Incorrect character "
+                    + "value sent to MachineKernel convert(...).");
+        }
+        return scramble(c);
+    }
+
+    /** Returns the encoding/decoding of MSG, updating my state
+     *  accordingly. Identical to Machine.convert(String). */
+    String convert(String msg) {
+        char[] in = msg.toCharArray();
+        char[] out = new char[in.length];
+        int written = convert(in, 0, in.length, out, 0);
+        return new String(out, 0, written);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF, exactly as Machine.convert(char[], int, int, char[], int)
+     *  does, and returns the number of characters written. */
+    int convert(char[] in, int off, int len, char[] out, int outOff) {
+        return Machine.convert(_alphabet, this::scramble, in, off, len, out,
+                               outOff);
+    }
+
+    /** Converts the LEN alphabet indices in IN starting at OFF, writing
+     *  the resulting indices into OUT starting at OUTOFF. Every index must
+     *  be in the range 0..alphabet size - 1; this is not checked. */
+    void convertIndices(int[] in, int off, int len, int[] out, int outOff) {
+        for (int index = 0; index < len; index += 1) {
+            out[outOff + index] = scramble(in[off + index]);
+        }
+    }
+
+    /** Returns the conversion of C, which must be a valid index, after
+     *  advancing the rotors. Every slot but the fast rotor is folded into
+     *  the single table _core, so a keystroke costs the plugboard, two
+     *  passes of the fast rotor and one _core lookup. */
+    private int scramble(int c) {
+        advance();
+        if (!_coreValid) {
+            buildCore();
+        }
+        final int n = _size;
+        final int base = _last * 2 * n;
+        final int p = _positions[_last];
+        int x = _plugForward[c];
+        x = _mod[_forward[base + x + p] - p + n];
+        x = _core[x];
+        x = _mod[_backward[base + x + p] - p + n];
+        return _plugInverse[x];
+    }
+
+    /** Returns the conversion of X entering the rotor in SLOT from the
+     *  right at its current setting. The doubled wiring table absorbs the
+     *  entry offset and _mod absorbs the exit offset, so a pass is two
+     *  table loads with no division or branch. */
+    private int forward(int slot, int x) {
+        int p = _positions[slot];
+        return _mod[_forward[slot * 2 * _size + x + p] - p + _size];
+    }
+
+    /** Returns the conversion of X entering the rotor in SLOT from the
+     *  left at its current setting, as for forward. */
+    private int backward(int slot, int x) {
+        int p = _positions[slot];
+        return _mod[_backward[slot * 2 * _size + x + p] - p + _size];
+    }
+
+    /** Recomputes _core, the composition of every slot but the fast rotor
+     *  (forward through the reflector and back). The slots to the left of
+     *  the middle rotor move rarely and are cached in _slow, so normally
+     *  only the middle rotor's two passes are recomputed. */
+    private void buildCore() {
+        final int n = _size;
+        final int middle = _last - 1;
+        if (middle == 0) {
+            for (int contact = 0; contact < n; contact += 1) {
+                _core[contact] = forward(0, contact);
+            }
+        } else {
+            if (!_slowValid) {
+                for (int contact = 0; contact < n; contact += 1) {
+                    int x = contact;
+                    for (int slot = middle - 1; slot >= 0; slot -= 1) {
+                        x = forward(slot, x);
+                    }
+                    for (int slot = 1; slot < middle; slot += 1) {
+                        x = backward(slot, x);
+                    }
+                    _slow[contact] = x;
+                }
+                _slowValid = true;
+            }
+            for (int contact = 0; contact < n; contact += 1) {
+                int x = forward(middle, contact);
+                _core[contact] = backward(middle, _slow[x]);
+            }
+        }
+        _coreValid = true;
+    }
+
+    /** Advances the rotors exactly as Machine does: slots are visited
+     *  from right to left, each seeing the positions its right neighbors
+     *  have already taken this step, and the fast rotor moves last.
+     *  While no slot is at a notch only the fast rotor can move, so the
+     *  walk over the slots is skipped. Invalidates _core and _slow as
+     *  needed. */
+    private void advance() {
+        final int n = _size;
+        final int[] pos = _positions;
+        if (!_engaged) {
+            pos[_last] = pos[_last] + 1 == n ? 0 : pos[_last] + 1;
+            _engaged = _notches[_last * n + pos[_last]];
+            return;
+        }
+        final boolean[] notches = _notches;
+        final boolean[] rotates = _rotates;
+        for (int slot = _last - 1; slot >= 0; slot -= 1) {
+            if (notches[slot * n + pos[slot]]) {
+                if (slot > 0 && rotates[slot - 1]) {
+                    pos[slot] = pos[slot] + 1 == n ? 0 : pos[slot] + 1;
+                    pos[slot - 1] = pos[slot - 1] + 1 == n
+                        ? 0 : pos[slot - 1] + 1;
+                    moved(slot - 1);
+                }
+            } else if (rotates[slot]
+                       && notches[(slot + 1) * n + pos[slot + 1]]) {
+                pos[slot] = pos[slot] + 1 == n ? 0 : pos[slot] + 1;
+                moved(slot);
+            }
+        }
+        pos[_last] = pos[_last] + 1 == n ? 0 : pos[_last] + 1;
+        updateEngaged();
+    }
+
+    /** Invalidates the cached tables that depend on the rotors in slots
+     *  SLOT and higher, other than the fast rotor. */
+    private void moved(int slot) {
+        _coreValid = false;
+        if (slot < _last - 1) {
+            _slowValid = false;
+        }
+    }
+
+    /** Sets _engaged to whether any slot is at a notch. */
+    private void updateEngaged() {
+        _engaged = false;
+        for (int slot = 0; slot <= _last; slot += 1) {
+            if (_notches[slot * _size + _positions[slot]]) {
+                _engaged = true;
+                return;
+            }
+        }
+    }
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** The size of _alphabet. */
+    private final int _size;
+
+    /** The slot of the fast rotor. */
+    private final int _last;
+
+    /** Plugboard permutation applied on the way in (identity if none). */
+    private final int[] _plugForward;
+
+    /** Plugboard inverse applied on the way out (identity if none). */
+    private final int[] _plugInverse;
+
+    /** _mod[x] is x modulo the alphabet size, for 0 <= x < 2 * size. */
+    private final int[] _mod;
+
+    /** Doubled forward wirings: entry slot * 2n + x is the permutation of
+     *  x mod n by the rotor in SLOT, for 0 <= x < 2n. */
+    private final int[] _forward;
+
+    /** Doubled inverse wirings, laid out as _forward. */
+    private final int[] _backward;
+
+    /** Entry slot * n + k is true iff setting K of the rotor in SLOT is a
+     *  notch. */
+    private final boolean[] _notches;
+
+    /** _rotates[slot] is true iff the rotor in SLOT rotates. */
+    private final boolean[] _rotates;
+
+    /** The current setting of the rotor in each slot. */
+    private final int[] _positions;
+
+    /** The composed permutation of every slot but the fast rotor at their
+     *  current settings; valid only while _coreValid. */
+    private final int[] _core;
+
+    /** True iff _core reflects the current _positions. */
+    private boolean _coreValid;
+
+    /** The composed permutation of the slots to the left of the middle
+     *  rotor (the slot next to the fast rotor), forward through the
+     *  reflector and back; valid only while _slowValid. */
+    private final int[] _slow;
+
+    /** True iff _slow reflects the current _positions. */
+    private boolean _slowValid;
+
+    /** True iff some slot may be at a notch, so that advancing must walk
+     *  the slots. */
+    private boolean _engaged;
+
+}
@@ -0,0 +1,63 @@
+package enigma;
+
+/** The settings a settings line gives one machine, compiled so that the
+ *  machine can be put back into them (see Machine.restore) without the
+ *  line being parsed, or any rotor being looked up by name, again: the
+ *  rotors in its slots with their stepping tables, the setting of each
+ *  with the ring setting folded in, and its plugboard. A MachineSettings
+ *  refers to the rotors of the machine it was taken from, and may only
+ *  be restored to that machine.
+ *  @author Evelyn Vo
+ */
+final class MachineSettings {
+
+    /** Settings putting the rotors SLOTS, stepped by ODOMETER, into the
+     *  slots of a machine at the settings POSITIONS, with the plugboard
+     *  PLUGBOARD, or none if it is null. SLOTS and POSITIONS are
+     *  copied. */
+    MachineSettings(Rotor[] slots, Odometer odometer, int[] positions,
+                    Permutation plugboard) {
+        _slots = slots.clone();
+        _odometer = odometer;
+        _positions = positions.clone();
+        _plugboard = plugboard;
+    }
+
+    /** Returns the rotor in slot SLOT. */
+    Rotor rotor(int slot) {
+        return _slots[slot];
+    }
+
+    /** Returns the number of slots I fill. */
+    int numRotors() {
+        return _slots.length;
+    }
+
+    /** Returns the stepping tables of my rotors. */
+    Odometer odometer() {
+        return _odometer;
+    }
+
+    /** Returns the setting of the rotor in slot SLOT. */
+    int setting(int slot) {
+        return _positions[slot];
+    }
+
+    /** Returns my plugboard, or null if there is none. */
+    Permutation plugboard() {
+        return _plugboard;
+    }
+
+    /** The rotors in each slot, reflector first. */
+    private final Rotor[] _slots;
+
+    /** The pawl and notch structure of _slots. */
+    private final Odometer _odometer;
+
+    /** The setting of each rotor of _slots. */
+    private final int[] _positions;
+
+    /** The plugboard, or null. */
+    private final Permutation _plugboard;
+
+}
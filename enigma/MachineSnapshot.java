@@ -0,0 +1,193 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Binary snapshots of the machines described by configuration files, from
+ *  which a machine can be loaded without parsing any text. A snapshot
+ *  holds the alphabet, the numbers of slots and pawls, and for each
+ *  rotor its kind, name, forward wiring table and notches, and is stamped
+ *  with the size and modification time of the configuration file it was
+ *  compiled from, so that a snapshot older than its configuration is
+ *  seen to be stale and ignored. All numbers are big-endian:
+ *      int     MAGIC
+ *      int     VERSION
+ *      long    size of the configuration file
+ *      long    its modification time, in milliseconds
+ *      int     number of slots
+ *      int     number of pawls
+ *      string  alphabet
+ *      int     number of rotors, R
+ *      R times:
+ *          byte    'M', 'N' or 'R', as in the configuration file
+ *          string  name
+ *          int[n]  forward wiring, n being the alphabet size
+ *          string  notches
+ *  where a string is an int length followed by that many chars.
+ *  @author Evelyn Vo
+ */
+final class MachineSnapshot {
+
+    /** Not instantiable. */
+    private MachineSnapshot() {
+    }
+
+    /** Writes a snapshot of M, which must have no rotors inserted and have
+     *  been configured from the configuration file CONFIG, to the file
+     *  SNAPSHOT. STAMP must be the attributes of CONFIG read before M was
+     *  configured from it. The snapshot is written to a temporary file
+     *  and moved into place, so that a reader never sees it half
+     *  written. */
+    static void write(Path snapshot, Machine M, BasicFileAttributes stamp)
+        throws IOException {
+        Path temporary = Files.createTempFile(snapshot.toAbsolutePath()
+                                              .getParent(), "enigma", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(
+                         Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(stamp.size());
+                out.writeLong(stamp.lastModifiedTime().toMillis());
+                out.writeInt(M.numRotors());
+                out.writeInt(M.numPawls());
+                writeString(out, M.alphabet().toString());
+                List<Rotor> rotors = M.availableRotors();
+                out.writeInt(rotors.size());
+                for (Rotor rotor : rotors) {
+                    out.writeByte(kind(rotor));
+                    writeString(out, rotor.name());
+                    for (int image : rotor.permutation().forwardTable()) {
+                        out.writeInt(image);
+                    }
+                    writeString(out, notches(rotor));
+                }
+            }
+            Files.move(temporary, snapshot,
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /** Returns the machine in the snapshot SNAPSHOT of the configuration
+     *  file CONFIG, memory-mapping the snapshot to read it. Returns null
+     *  if there is no such snapshot, or it is stale, of another version
+     *  or damaged, in which case the configuration must be parsed. */
+    static Machine load(Path snapshot, Path config) {
+        try (FileChannel channel = FileChannel.open(snapshot)) {
+            BasicFileAttributes stamp =
+                Files.readAttributes(config, BasicFileAttributes.class);
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                        channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != VERSION
+                || in.getLong() != stamp.size()
+                || in.getLong() != stamp.lastModifiedTime().toMillis()) {
+                return null;
+            }
+            return readMachine(in);
+        } catch (IOException | BufferUnderflowException
+                 | EnigmaException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the machine whose description follows the header of a
+     *  snapshot in IN. */
+    private static Machine readMachine(ByteBuffer in) {
+        int numRotors = in.getInt();
+        int numPawls = in.getInt();
+        Alphabet alphabet = Alphabet.trusted(readString(in));
+        int count = in.getInt();
+        ArrayList<Rotor> rotors = new ArrayList<>(count);
+        for (int index = 0; index < count; index += 1) {
+            byte kind = in.get();
+            String name = readString(in);
+            int[] forward = new int[alphabet.size()];
+            in.asIntBuffer().get(forward);
+            in.position(in.position() + 4 * forward.length);
+            Permutation perm = new Permutation(forward, alphabet);
+            String notches = readString(in);
+            if (kind == 'M') {
+                rotors.add(new MovingRotor(name, perm, notches));
+            } else if (kind == 'N') {
+                rotors.add(new FixedRotor(name, perm));
+            } else if (kind == 'R') {
+                rotors.add(new Reflector(name, perm));
+            } else {
+                throw new EnigmaException("Bad rotor kind in snapshot.");
+            }
+        }
+        if (in.hasRemaining()) {
+            throw new EnigmaException("Trailing bytes in snapshot.");
+        }
+        return new Machine(alphabet, numRotors, numPawls, rotors);
+    }
+
+    /** Returns the letter standing for the kind of ROTOR in configuration
+     *  files and snapshots. */
+    private static char kind(Rotor rotor) {
+        if (rotor.reflecting()) {
+            return 'R';
+        } else if (rotor.rotates()) {
+            return 'M';
+        } else {
+            return 'N';
+        }
+    }
+
+    /** Returns the notches of ROTOR, in alphabet order. */
+    private static String notches(Rotor rotor) {
+        StringBuilder notches = new StringBuilder();
+        if (rotor instanceof MovingRotor) {
+            boolean[] table = ((MovingRotor) rotor).notchTable();
+            for (int index = 0; index < table.length; index += 1) {
+                if (table[index]) {
+                    notches.append(rotor.alphabet().toChar(index));
+                }
+            }
+        }
+        return notches.toString();
+    }
+
+    /** Writes STR to OUT as a snapshot string. */
+    private static void writeString(DataOutputStream out, String str)
+        throws IOException {
+        out.writeInt(str.length());
+        out.writeChars(str);
+    }
+
+    /** Reads a snapshot string from IN. */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || 2L * length > in.remaining()) {
+            throw new EnigmaException("Bad string in snapshot.");
+        }
+        char[] chars = new char[length];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + 2 * length);
+        return new String(chars);
+    }
+
+    /** The first four bytes of every snapshot: "ENIG" in ASCII. */
+    static final int MAGIC = 0x454E4947;
+
+    /** The version of the snapshot format that write produces and load
+     *  accepts. */
+    static final int VERSION = 1;
+
+}
@@ -0,0 +1,92 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineSnapshot class.
+ *  @author Evelyn Vo
+ */
+public class MachineSnapshotTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Returns the conversion of a fixed message by M set up as in the
+     *  naval example. */
+    private String naval(Machine M) {
+        M.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        M.setRotors("AXLE");
+        M.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                       M.alphabet()));
+        return M.convert("FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD"
+                         + "MADEOFSLIDINGFOLDINGROSEWOODNEATLYPUTITALL");
+    }
+
+    /** Checks that a snapshot loads as the machine it was written from,
+     *  and only while its configuration file is unchanged. */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path snapshot = Path.of(config + Main.SNAPSHOT_SUFFIX);
+        try {
+            Files.writeString(config, "configuration");
+            assertNull(MachineSnapshot.load(snapshot, config));
+            MachineSnapshot.write(snapshot, navalMachine(5, NAVAL_ROTORS),
+                Files.readAttributes(config, BasicFileAttributes.class));
+            Machine loaded = MachineSnapshot.load(snapshot, config);
+            assertNotNull(loaded);
+            assertEquals(5, loaded.numRotors());
+            assertEquals(3, loaded.numPawls());
+            assertEquals(UPPER.toString(), loaded.alphabet().toString());
+            assertEquals(naval(navalMachine(5, NAVAL_ROTORS)), naval(loaded));
+
+            Files.setLastModifiedTime(config, FileTime.fromMillis(
+                Files.getLastModifiedTime(config).toMillis() + 1000));
+            assertNull(msg("testRoundTrip", "stale snapshot loaded"),
+                       MachineSnapshot.load(snapshot, config));
+        } finally {
+            Files.deleteIfExists(config);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /** Checks that a damaged snapshot is not loaded. */
+    @Test
+    public void testDamaged() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path snapshot = Path.of(config + Main.SNAPSHOT_SUFFIX);
+        try {
+            MachineSnapshot.write(snapshot, navalMachine(5, NAVAL_ROTORS),
+                Files.readAttributes(config, BasicFileAttributes.class));
+            byte[] bytes = Files.readAllBytes(snapshot);
+            for (int length : new int[] {0, 10, 40, bytes.length - 1}) {
+                byte[] part = new byte[length];
+                System.arraycopy(bytes, 0, part, 0, length);
+                Files.write(snapshot, part);
+                assertNull(msg("testDamaged", "%d bytes loaded", length),
+                           MachineSnapshot.load(snapshot, config));
+            }
+        } finally {
+            Files.deleteIfExists(config);
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    /** Checks that a table that is not a permutation is rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testBadTable() {
+        new Permutation(new int[] {0, 1, 1}, new Alphabet("ABC"));
+    }
+
+}
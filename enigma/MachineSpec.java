@@ -0,0 +1,279 @@
+package enigma;
+
+import java.util.Collection;
+
+/** An immutable description of a configured Enigma machine: its alphabet,
+ *  the wirings and notches of the rotors in its slots, its ring settings
+ *  and its plugboard. Everything is copied out of the Rotors and
+ *  Permutations it is built from, so a spec never changes and never
+ *  changes them, and any number of threads may convert through one spec
+ *  at once, each with its own MachineState, without locking.
+ *  @author Evelyn Vo
+ */
+final class MachineSpec {
+
+    /** A spec over alphabet ALPHA with PAWLS moving rotors, whose slots
+     *  hold the rotors named ROTORS (ROTORS[0] names the reflector), taken
+     *  from AVAILABLE, which is only read. RINGS holds the ring setting of
+     *  each rotor but the reflector, as for Machine.setRings, or is empty
+     *  if there are none. PLUGBOARD is null if there is no plugboard. */
+    MachineSpec(Alphabet alpha, int pawls, Collection<Rotor> available,
+                String[] rotors, String rings, Permutation plugboard) {
+        int n = alpha.size();
+        int numSlots = rotors.length;
+        Rotor[] slots = selectRotors(pawls, available, rotors);
+        _alphabet = alpha;
+        _size = n;
+        _last = numSlots - 1;
+        _names = rotors.clone();
+        _rings = new int[numSlots];
+        if (!rings.isEmpty()) {
+            if (rings.length() != numSlots - 1) {
+                throw new EnigmaException("Incorrect number of settings");
+            }
+            for (int slot = 1; slot < numSlots; slot += 1) {
+                _rings[slot] = toIndex(rings.charAt(slot - 1));
+            }
+        }
+        _plugForward = new int[n];
+        _plugInverse = new int[n];
+        for (int index = 0; index < n; index += 1) {
+            _plugForward[index] = index;
+            _plugInverse[index] = index;
+        }
+        if (plugboard != null) {
+            System.arraycopy(plugboard.forwardTable(), 0, _plugForward, 0, n);
+            System.arraycopy(plugboard.inverseTable(), 0, _plugInverse, 0, n);
+        }
+        _mod = new int[2 * n];
+        for (int index = 0; index < _mod.length; index += 1) {
+            _mod[index] = index % n;
+        }
+        _forward = new int[numSlots * 2 * n];
+        _backward = new int[numSlots * 2 * n];
+        boolean[] rotates = new boolean[numSlots];
+        boolean[][] notchTables = new boolean[numSlots][];
+        for (int slot = 0; slot < numSlots; slot += 1) {
+            Rotor rotor = slots[slot];
+            if (rotor.size() != n) {
+                throw new EnigmaException("Cannot have rotors "
+                        + "in the same machine with different alphabets.");
+            }
+            int[] forward = rotor.permutation().forwardTable();
+            int[] inverse = rotor.permutation().inverseTable();
+            for (int contact = 0; contact < 2 * n; contact += 1) {
+                _forward[slot * 2 * n + contact] = forward[contact % n];
+                _backward[slot * 2 * n + contact] = inverse[contact % n];
+            }
+            rotates[slot] = rotor.rotates();
+            if (rotor instanceof MovingRotor) {
+                notchTables[slot] = ((MovingRotor) rotor).notchTable();
+            }
+        }
+        _odometer = new Odometer(n, rotates, notchTables);
+    }
+
+    /** Returns the rotors named ROTORS from AVAILABLE, in order, checking
+     *  that they make a valid arrangement with PAWLS moving rotors. */
+    private static Rotor[] selectRotors(int pawls, Collection<Rotor> available,
+                                        String[] rotors) {
+        if (rotors.length <= 1) {
+            throw new EnigmaException("Cannot have <= 1 rotors.");
+        }
+        Rotor[] slots = new Rotor[rotors.length];
+        int moving = 0;
+        for (int index = 0; index < rotors.length; index += 1) {
+            for (Rotor rotor : available) {
+                if (rotor.name().equals(rotors[index])) {
+                    slots[index] = rotor;
+                    break;
+                }
+            }
+            Rotor rotor = slots[index];
+            if (rotor == null) {
+                throw new EnigmaException("Rotors passed not in Machine.");
+            } else if (index == 0 && !rotor.reflecting()) {
+                throw new EnigmaException("First rotor passed to "
+                        + "insertRotors must be a reflector.");
+            } else if (index > 0 && rotor.reflecting()) {
+                throw new EnigmaException("Cannot have more "
+                        + "than 1 reflector in use in a machine.");
+            } else if (index == rotors.length - 1 && !rotor.rotates()) {
+                throw new EnigmaException("Last rotor passed to "
+                        + "insertRotors must be a moving rotor.");
+            }
+            for (int prev = 0; prev < index; prev += 1) {
+                if (slots[prev] == rotor) {
+                    throw new EnigmaException("Cannot have duplicate "
+                            + "rotors passed to insertRotors.");
+                }
+            }
+            if (rotor.rotates()) {
+                moving += 1;
+            }
+        }
+        if (moving != pawls) {
+            throw new EnigmaException("Incorrect number of "
+                    + "moving rotors passed to insertRotors.");
+        }
+        return slots;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _last + 1;
+    }
+
+    /** Return the name of the rotor in slot SLOT. */
+    String rotorName(int slot) {
+        return _names[slot];
+    }
+
+    /** Returns a new state with my rotors set to SETTING, which must be a
+     *  string of numRotors()-1 characters in my alphabet, as for
+     *  Machine.setRotors, and then adjusted by my rings. */
+    MachineState newState(String setting) {
+        if (setting.length() != _last) {
+            throw new EnigmaException("Invalid length "
+                    + "of parameter to setRotors.");
+        }
+        int[] positions = new int[_last + 1];
+        for (int slot = 1; slot <= _last; slot += 1) {
+            int posn = toIndex(setting.charAt(slot - 1)) - _rings[slot];
+            positions[slot] = posn < 0 ? posn + _size : posn;
+        }
+        return new MachineState(positions);
+    }
+
+    /** Returns the index of CH in my alphabet, which must contain it. */
+    private int toIndex(char ch) {
+        int index = _alphabet.toInt(ch);
+        if (index == -1) {
+            throw new EnigmaException("Can't have rotor posn not in "
+                    + "the alphabet.");
+        }
+        return index;
+    }
+
+    /** Returns the result of converting the input character C (as an
+     *  index in the range 0..alphabet size - 1) with my rotors at the
+     *  settings in STATE, after first advancing them. */
+    int convert(MachineState state, int c) {
+        if (c < 0 || c >= _size) {
+            throw new EnigmaException("Incorrect character "
+                    + "value sent to MachineSpec convert(...).");
+        }
+        return scramble(state.positions(), c);
+    }
+
+    /** Returns the encoding/decoding of MSG with my rotors at the settings
+     *  in STATE, updating STATE accordingly, as for Machine.convert. */
+    String convert(MachineState state, String msg) {
+        char[] in = msg.toCharArray();
+        char[] out = new char[in.length];
+        int written = convert(state, in, 0, in.length, out, 0);
+        return new String(out, 0, written);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF into OUT starting
+     *  at OUTOFF with my rotors at the settings in STATE, updating STATE,
+     *  exactly as Machine.convert(char[], int, int, char[], int) does.
+     *  Returns the number of characters written. */
+    int convert(MachineState state, char[] in, int off, int len,
+                char[] out, int outOff) {
+        int[] pos = state.positions();
+        return Machine.convert(_alphabet, c -> scramble(pos, c), in, off, len,
+                               out, outOff);
+    }
+
+    /** Advances the settings in STATE by N keystrokes without converting
+     *  anything (see Machine.seek). */
+    void seek(MachineState state, long n) {
+        _odometer.seek(state.positions(), n);
+    }
+
+    /** Advances the settings in STATE by N keystrokes one at a time,
+     *  with the same result as seek(STATE, N) but allocating nothing,
+     *  which is quicker when N is small. */
+    void step(MachineState state, long n) {
+        int[] pos = state.positions();
+        for (long k = 0; k < n; k += 1) {
+            _odometer.step(pos);
+        }
+    }
+
+    /** Advances the settings in STATE by one keystroke and fills TABLE,
+     *  which has an entry for each letter of my alphabet, with the
+     *  permutation my rotors then apply, leaving out my plugboard: the
+     *  index each letter goes to. The permutation is an involution with
+     *  no fixed points, since the reflector's is. */
+    void scrambler(MachineState state, int[] table) {
+        int[] pos = state.positions();
+        _odometer.step(pos);
+        for (int c = 0; c < _size; c += 1) {
+            table[c] = rotors(pos, c);
+        }
+    }
+
+    /** Returns the conversion of C, which must be a valid index, after
+     *  advancing the settings POS. */
+    private int scramble(int[] pos, int c) {
+        _odometer.step(pos);
+        return _plugInverse[rotors(pos, _plugForward[c])];
+    }
+
+    /** Returns the conversion of C by my rotors alone, at the settings
+     *  POS. */
+    private int rotors(int[] pos, int c) {
+        final int n = _size;
+        int x = c;
+        for (int slot = _last; slot >= 0; slot -= 1) {
+            int p = pos[slot];
+            x = _mod[_forward[slot * 2 * n + x + p] - p + n];
+        }
+        for (int slot = 1; slot <= _last; slot += 1) {
+            int p = pos[slot];
+            x = _mod[_backward[slot * 2 * n + x + p] - p + n];
+        }
+        return x;
+    }
+
+    /** Common alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** The size of _alphabet. */
+    private final int _size;
+
+    /** The slot of the fast rotor. */
+    private final int _last;
+
+    /** The names of the rotors in my slots. */
+    private final String[] _names;
+
+    /** The ring setting of the rotor in each slot. */
+    private final int[] _rings;
+
+    /** Plugboard permutation applied on the way in (identity if none). */
+    private final int[] _plugForward;
+
+    /** Plugboard inverse applied on the way out (identity if none). */
+    private final int[] _plugInverse;
+
+    /** _mod[x] is x modulo the alphabet size, for 0 <= x < 2 * size. */
+    private final int[] _mod;
+
+    /** Doubled forward wirings, laid out as in MachineKernel. */
+    private final int[] _forward;
+
+    /** Doubled inverse wirings, laid out as _forward. */
+    private final int[] _backward;
+
+    /** The pawl and notch structure of my slots. */
+    private final Odometer _odometer;
+
+}
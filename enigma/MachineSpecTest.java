@@ -0,0 +1,104 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the MachineSpec class.
+ *  @author Evelyn Vo
+ */
+public class MachineSpecTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The rotors of the naval example, in slot order. */
+    private static final String[] NAVAL_ORDER =
+        {"B", "Beta", "III", "IV", "I"};
+
+    /** The plugboard of the naval example. */
+    private static final String NAVAL_PLUGS = "(HQ) (EX) (IP) (TR) (BY)";
+
+    /** A long message to convert. */
+    private static final String MESSAGE;
+    static {
+        StringBuilder text = new StringBuilder();
+        for (int index = 0; index < 20000; index += 1) {
+            text.append(UPPER_STRING.charAt((index * 7 + index / 26) % 26));
+        }
+        MESSAGE = text.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    /** Checks that a spec with rings converts as a Machine set up the same
+     *  way does. */
+    @Test
+    public void testMatchesMachine() {
+        ArrayList<Rotor> rotors = navalRotors(NAVAL_ROTORS);
+        MachineSpec spec = new MachineSpec(UPPER, 3, rotors, NAVAL_ORDER,
+                "BQZE", new Permutation(NAVAL_PLUGS, UPPER));
+        MachineState state = spec.newState("AXLE");
+        Machine mach = navalMachine(5, NAVAL_ROTORS);
+        mach.insertRotors(NAVAL_ORDER);
+        mach.setRotors("AXLE");
+        mach.setRings("BQZE");
+        mach.setPlugboard(new Permutation(NAVAL_PLUGS, UPPER));
+        assertEquals(mach.convert(MESSAGE), spec.convert(state, MESSAGE));
+        for (Rotor rotor : rotors) {
+            assertEquals("spec moved " + rotor, 0, rotor.setting());
+        }
+
+        MachineState copy = mach.state();
+        MachineSpec fromMachine = mach.spec();
+        assertEquals(mach.convert(MESSAGE),
+                     fromMachine.convert(copy, MESSAGE));
+        spec.seek(state, MESSAGE.length());
+        for (int slot = 0; slot < spec.numRotors(); slot += 1) {
+            assertEquals(msg("seek", "wrong setting in slot %d", slot),
+                         copy.setting(slot), state.setting(slot));
+        }
+    }
+
+    /** Checks that many threads can convert through one spec at once. */
+    @Test
+    public void testConcurrentStates() throws InterruptedException {
+        MachineSpec spec = new MachineSpec(UPPER, 3, navalRotors(NAVAL_ROTORS),
+                NAVAL_ORDER, "", new Permutation(NAVAL_PLUGS, UPPER));
+        String expected = spec.convert(spec.newState("AXLE"), MESSAGE);
+        String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int index = 0; index < threads.length; index += 1) {
+            final int which = index;
+            threads[index] = new Thread(() -> {
+                MachineState state = spec.newState("AXLE");
+                results[which] = spec.convert(state, MESSAGE);
+            });
+            threads[index].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            assertEquals(expected, result);
+        }
+    }
+
+    /** Checks that a spec whose first rotor is not a reflector is
+     *  rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testBadOrder() {
+        new MachineSpec(UPPER, 3, navalRotors(NAVAL_ROTORS),
+                        new String[] {"Beta", "B", "III", "IV", "I"}, "",
+                        null);
+    }
+
+}
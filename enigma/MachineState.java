@@ -0,0 +1,39 @@
+package enigma;
+
+/** The settings of the rotors of one machine built to a MachineSpec: the
+ *  only part of a machine that changes as it converts. A state is used by
+ *  one thread at a time; any number of states may share a spec.
+ *  @author Evelyn Vo
+ */
+final class MachineState {
+
+    /** A state whose rotor in slot I has setting POSITIONS[I]. POSITIONS
+     *  is copied. */
+    MachineState(int[] positions) {
+        _positions = positions.clone();
+    }
+
+    /** Return the number of rotor slots I hold settings for. */
+    int numRotors() {
+        return _positions.length;
+    }
+
+    /** Return the setting of the rotor in slot SLOT. */
+    int setting(int slot) {
+        return _positions[slot];
+    }
+
+    /** Returns a new state with my settings. */
+    MachineState copy() {
+        return new MachineState(_positions);
+    }
+
+    /** Returns my settings themselves, for MachineSpec to update in place. */
+    int[] positions() {
+        return _positions;
+    }
+
+    /** The setting of the rotor in each slot. */
+    private final int[] _positions;
+
+}
@@ -2,8 +2,10 @@ package enigma;
 
 import org.junit.Test;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -210,6 +212,138 @@ public class MachineTest {
                     inputExampleNaval, convertedMsg);
     }
 
+    /** Returns the machine used for exampleNaval, set to its start. */
+    private Machine getNavalExampleMachine() {
+        Machine defConf = getDefaultMachine(new String[] {"Beta",
+            "I", "III", "B", "IV"});
+        defConf.insertRotors(new String[] {"B", "Beta", "III", "IV", "I"});
+        defConf.setRotors("AXLE");
+        Permutation plug = new Permutation("(HQ) (EX) (IP) (TR) (BY)", UPPER);
+        defConf.setPlugboard(plug);
+        return defConf;
+    }
+
+    /** Checks that the bulk char[] conversion honors offsets, drops
+     *  whitespace other than newlines, and matches convert(String). */
+    @Test
+    public void testConvertCharArray() {
+        String padded = "##" + inputExampleNaval.replace("\n", " \n\t") + "#";
+        char[] in = padded.toCharArray();
+        char[] out = new char[in.length + 3];
+        Machine mach = getNavalExampleMachine();
+        int written = mach.convert(in, 2, in.length - 3, out, 3);
+        assertEquals("Bulk conversion of exampleNaval incorrect.",
+                outputExampleNaval, new String(out, 3, written));
+    }
+
+    /** Checks that the CharBuffer conversions match convert(String) for
+     *  both array-backed and read-only buffers. */
+    @Test
+    public void testConvertCharBuffer() {
+        Machine mach = getNavalExampleMachine();
+        CharBuffer in = CharBuffer.wrap(inputExampleNaval.toCharArray());
+        CharBuffer out = CharBuffer.allocate(in.remaining());
+        mach.convert(in, out);
+        out.flip();
+        assertFalse(in.hasRemaining());
+        assertEquals(outputExampleNaval, out.toString());
+
+        mach = getNavalExampleMachine();
+        CharBuffer readOnly = CharBuffer.wrap(outputExampleNaval);
+        assertEquals(inputExampleNaval, mach.convert(readOnly).toString());
+    }
+
+    /** Checks that the bulk conversion rejects characters not in the
+     *  alphabet. */
+    @Test(expected = EnigmaException.class)
+    public void testConvertCharArrayInvalid() {
+        char[] in = "HELLO WORLD!".toCharArray();
+        getNavalExampleMachine().convert(in, 0, in.length,
+                                         new char[in.length], 0);
+    }
+
+    /** Checks that a MachineKernel compiled from a machine converts exactly
+     *  as the machine does, including across the middle rotor's double
+     *  step, without moving the machine's rotors. */
+    @Test
+    public void testKernelMatchesMachine() {
+        Machine mach = getNavalExampleMachine();
+        MachineKernel kernel = mach.kernel();
+        assertEquals(outputExampleNaval, kernel.convert(inputExampleNaval));
+        String[][] start = new String[][] {{"Beta", "A"}, {"III", "X"},
+            {"IV", "L"}, {"I", "E"}};
+        checkPositions(mach, start, UPPER);
+
+        mach = getDefaultMachine(new String[] {"Beta", "I", "II", "B",
+            "III"});
+        mach.insertRotors(new String[] {"B", "Beta", "I", "II", "III"});
+        mach.setRotors("AADU");
+        kernel = mach.kernel();
+        String msg = inputExampleNaval.replace("\n", "");
+        for (int rep = 0; rep < 40; rep += 1) {
+            assertEquals(mach.convert(msg), kernel.convert(msg));
+        }
+    }
+
+    /** Checks that convertParallel matches serial conversion, including
+     *  where the message and its chunks start and end, and leaves the
+     *  rotors where serial conversion does, when a pool is used for
+     *  several messages. */
+    @Test
+    public void testConvertParallel() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 6 * Machine.MIN_PARALLEL_CHUNK) {
+            text.append(inputExampleNaval).append(" \t");
+        }
+        String msg = text.toString();
+        Machine serial = getNavalExampleMachine();
+        Machine parallel = getNavalExampleMachine();
+        for (int threads : new int[] {1, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int rep = 0; rep < 2; rep += 1) {
+                    assertEquals(msg("parallel", "wrong output on %d "
+                                     + "threads", threads),
+                            serial.convert(msg),
+                            parallel.convertParallel(msg, pool));
+                    assertEquals(msg("parallel", "wrong position on %d "
+                                     + "threads", threads),
+                            serial.positionAt(0), parallel.positionAt(0));
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        char[] in = ("#" + msg + "#").toCharArray();
+        char[] out = new char[in.length + 2];
+        int written = parallel.convertParallel(in, 1, msg.length(), out, 2,
+                                               ForkJoinPool.commonPool());
+        assertEquals(serial.convert(msg), new String(out, 2, written));
+    }
+
+    /** Checks that seek and positionAt agree with converting one
+     *  character at a time, across double steps of the middle rotor. */
+    @Test
+    public void testSeek() {
+        Machine mach = getNavalExampleMachine();
+        Machine replay = getNavalExampleMachine();
+        long done = 0;
+        for (long target : new long[] {0, 1, 5, 17, 700, 17577, 40000}) {
+            while (done < target) {
+                replay.convert(0);
+                done += 1;
+            }
+            assertEquals(msg("seek", "wrong position at %d", target),
+                    replay.positionAt(0), mach.positionAt(target));
+        }
+        checkPositions(mach, new String[][] {{"Beta", "A"}, {"III", "X"},
+            {"IV", "L"}, {"I", "E"}}, UPPER);
+        mach = getNavalExampleMachine();
+        mach.seek(done);
+        assertEquals(replay.convert(inputExampleNaval),
+                mach.convert(inputExampleNaval));
+    }
+
     /** Checks that convert(int) works correctly with or without a plugboard.
      * Tests for whether convert(int) correctly identifies when to advance.
      * A given rotor should advance if: (1) it is the rightmost rotor,
@@ -1,13 +1,41 @@
 package enigma;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
 import java.util.regex.Pattern;
 
 import static enigma.EnigmaException.*;
@@ -18,14 +46,28 @@ import static enigma.EnigmaException.*;
 public final class Main {
 
     /** Process a sequence of encryptions and decryptions, as
-     *  specified by ARGS, where 1 <= ARGS.length <= 3.
+     *  specified by ARGS, where 1 <= ARGS.length <= 3 after any leading
+     *  options (arguments beginning with "--", see parseOptions).
      *  ARGS[0] is the name of a configuration file.
      *  ARGS[1] is optional; when present, it names an input file
      *  containing messages.  Otherwise, input comes from the standard
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
-     *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  standard output. With --batch, ARGS[0] names the configuration
+     *  file and the rest name input files or directories of them (see
+     *  processBatch). With --serve, ARGS[0] alone names the configuration
+     *  file (see serve). With --compile, ARGS[0] alone names a
+     *  configuration file, which is compiled into a snapshot (see
+     *  loadConfig). With --bytes, the input and output are binary (see
+     *  processBytes). With --search, the input is a ciphertext whose
+     *  settings are searched for (see search), and with --bombe, one
+     *  whose settings and plugboard are found by a bombe (see bombe).
+     *  With --plugboard, the input is a ciphertext whose plugboard is
+     *  found by hill climbing (see solvePlugboard). With --ngrams,
+     *  ARGS[1] names a training corpus and ARGS[2] the n-gram table file
+     *  built from it (see buildNgrams).
+     *  Exits normally if there are no errors in the input; otherwise
+     *  with code 1. */
     public static void main(String... args) {
         try {
             new Main(args).process();
@@ -38,150 +80,838 @@ public final class Main {
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        args = parseOptions(args);
+        if (_tableName != null && _plugboardSettings == null) {
+            throw error("--table is only used with --plugboard");
+        }
+        if (args.length > 0) {
+            _configName = args[0];
+        }
+        if (_compile) {
+            if (args.length != 1) {
+                throw error("--compile needs just a configuration file");
+            }
+            _config = getInput(args[0]);
+            return;
+        }
+        if (_ngramOrder > 0) {
+            if (args.length != 3) {
+                throw error("--ngrams needs a configuration file, a corpus "
+                            + "and a table file");
+            }
+            _config = getInput(args[0]);
+            _corpus = openInput(args[1]);
+            _ngramFile = args[2];
+            return;
+        }
+        if (_batch) {
+            if (args.length < 2) {
+                throw error("--batch needs a configuration file and inputs");
+            }
+            _config = getInput(args[0]);
+            _batchInputs = batchInputs(Arrays.copyOfRange(args, 1,
+                                                          args.length));
+            return;
+        }
+        if (_serveAddress != null) {
+            if (args.length != 1) {
+                throw error("--serve needs just a configuration file");
+            }
+            _config = getInput(args[0]);
+            return;
+        }
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
 
         _config = getInput(args[0]);
 
+        if (_byteSettings != null) {
+            _byteInput = args.length > 1 ? openByteInput(args[1])
+                : new BufferedInputStream(System.in, BUFFER_SIZE);
+            _byteOutput = args.length > 2 ? openByteOutput(args[2])
+                : new BufferedOutputStream(System.out, BUFFER_SIZE);
+            return;
+        }
+
+        int capacity = _parallelism > 0 ? PARALLEL_BUFFER_SIZE : BUFFER_SIZE;
+        if (_mapped && args.length < 2) {
+            throw error("--mmap needs an input file");
+        }
         if (args.length > 1) {
-            _input = getInput(args[1]);
+            _input = new MessageInput(openInput(args[1]), capacity);
         } else {
-            _input = new Scanner(System.in);
+            _input = new MessageInput(
+                Channels.newReader(Channels.newChannel(System.in),
+                                   decoder(), BUFFER_SIZE), capacity);
         }
 
+        Writer output;
         if (args.length > 2) {
-            _output = getOutput(args[2]);
+            output = openOutput(args[2]);
         } else {
-            _output = System.out;
+            output = Channels.newWriter(Channels.newChannel(System.out),
+                                        encoder(), BUFFER_SIZE);
+        }
+        _output = new GroupWriter(output, _groupWidth, BUFFER_SIZE);
+        _converted = new char[capacity];
+    }
+
+    /** A Main for one file of the batch run by BATCH, taking the same
+     *  options as BATCH and converting the file named INPUT into the file
+     *  named OUTPUT. */
+    private Main(Main batch, String input, String output) {
+        this(batch);
+        int capacity = _parallelism > 0 ? PARALLEL_BUFFER_SIZE : BUFFER_SIZE;
+        _input = new MessageInput(openInput(input), capacity);
+        _output = new GroupWriter(openOutput(output), _groupWidth,
+                                  BUFFER_SIZE);
+        _converted = new char[capacity];
+    }
+
+    /** A Main with no input or output, taking the same options and
+     *  alphabet as MAIN. */
+    private Main(Main main) {
+        _useKernel = main._useKernel;
+        _parallelism = main._parallelism;
+        _pool = main._pool;
+        _mapped = main._mapped;
+        _groupWidth = main._groupWidth;
+        _alphabet = main._alphabet;
+    }
+
+    /** Record the options at the start of ARGS and return the remaining
+     *  arguments. The options are:
+     *      --kernel   convert through a compiled MachineKernel.
+     *      --parallel N
+     *                 convert each message on up to N threads (see
+     *                 Machine.convertParallel).
+     *      --mmap     read the input file, and write the output file if
+     *                 there is one, through memory-mapped windows (see
+     *                 MappedFileReader and MappedFileWriter).
+     *      --group N  write output in groups of N letters rather than
+     *                 five, or ungrouped if N is 0.
+     *      --batch    convert many input files with one configuration
+     *                 (see processBatch).
+     *      --jobs N   convert up to N files of a batch at once; by
+     *                 default, as many as there are processors.
+     *      --compile  write a snapshot of the configuration (see
+     *                 loadConfig) instead of converting messages.
+     *      --compile-rotors
+     *                 compile the tables of every rotor before converting
+     *                 (see Machine.compileRotors), and report the bytes
+     *                 they take on the standard error.
+     *      --serve ADDRESS
+     *                 convert messages for clients connecting to ADDRESS,
+     *                 a loopback TCP port number or the path of a Unix
+     *                 domain socket (see serve).
+     *      --bytes SETTINGS
+     *                 convert the input as bytes rather than as messages,
+     *                 with a machine set up by the settings line SETTINGS
+     *                 (see processBytes).
+     *      --search CRIB
+     *                 search for the settings under which the input, a
+     *                 ciphertext, starts with the plaintext CRIB (see
+     *                 search).
+     *      --bombe CRIB
+     *                 run a bombe for the settings and plugboard pairs
+     *                 under which the input, a ciphertext, starts with
+     *                 the plaintext CRIB (see bombe).
+     *      --plugboard SETTINGS
+     *                 find the plugboard under which the input, a
+     *                 ciphertext, was encrypted with the rotors and
+     *                 settings of the settings line SETTINGS (see
+     *                 solvePlugboard).
+     *      --table FILE
+     *                 with --plugboard, score decryptions by their
+     *                 log-likelihood under the n-gram table in FILE (see
+     *                 NgramFile) rather than their index of coincidence.
+     *      --ngrams N write a table of the N-grams of the configuration's
+     *                 alphabet in a training corpus (see buildNgrams)
+     *                 instead of converting messages.
+     *      --quantize store the logarithms of an n-gram table as shorts
+     *                 rather than floats (see NgramFile).
+     *  An argument of "--" ends the options. */
+    private String[] parseOptions(String[] args) {
+        int index;
+        for (index = 0; index < args.length; index += 1) {
+            String option = args[index];
+            if (!option.startsWith("--")) {
+                break;
+            } else if (option.equals("--")) {
+                index += 1;
+                break;
+            } else if (option.equals("--kernel")) {
+                _useKernel = true;
+            } else if (option.equals("--mmap")) {
+                _mapped = true;
+            } else if (option.equals("--parallel")) {
+                index += 1;
+                _parallelism = parseParallelism(index < args.length
+                                                ? args[index] : "");
+            } else if (option.equals("--batch")) {
+                _batch = true;
+            } else if (option.equals("--jobs")) {
+                index += 1;
+                _jobs = parseParallelism(index < args.length
+                                         ? args[index] : "");
+            } else if (option.equals("--compile")) {
+                _compile = true;
+            } else if (option.equals("--compile-rotors")) {
+                _compileRotors = true;
+            } else if (option.equals("--serve")) {
+                index += 1;
+                if (index == args.length) {
+                    throw error("--serve needs an address");
+                }
+                _serveAddress = args[index];
+            } else if (option.equals("--bytes")) {
+                index += 1;
+                if (index == args.length) {
+                    throw error("--bytes needs a settings line");
+                }
+                _byteSettings = args[index];
+            } else if (option.equals("--search")) {
+                index += 1;
+                if (index == args.length) {
+                    throw error("--search needs a crib");
+                }
+                _crib = args[index];
+            } else if (option.equals("--bombe")) {
+                index += 1;
+                if (index == args.length) {
+                    throw error("--bombe needs a crib");
+                }
+                _bombeCrib = args[index];
+            } else if (option.equals("--plugboard")) {
+                index += 1;
+                if (index == args.length) {
+                    throw error("--plugboard needs a settings line");
+                }
+                _plugboardSettings = args[index];
+            } else if (option.equals("--table")) {
+                index += 1;
+                if (index == args.length) {
+                    throw error("--table needs an n-gram table file");
+                }
+                _tableName = args[index];
+            } else if (option.equals("--ngrams")) {
+                index += 1;
+                _ngramOrder = parseNgramOrder(index < args.length
+                                              ? args[index] : "");
+            } else if (option.equals("--quantize")) {
+                _quantize = true;
+            } else if (option.equals("--group")) {
+                index += 1;
+                _groupWidth = parseGroupWidth(index < args.length
+                                              ? args[index] : "");
+            } else {
+                throw error("unknown option %s", option);
+            }
+        }
+        return Arrays.copyOfRange(args, index, args.length);
+    }
+
+    /** Returns the number of threads given by the argument ARG of the
+     *  --parallel or --jobs option. */
+    private int parseParallelism(String arg) {
+        try {
+            int parallelism = Integer.parseInt(arg);
+            if (parallelism >= 1) {
+                return parallelism;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
         }
+        throw error("--parallel and --jobs need a positive number of threads, "
+                    + "not '%s'", arg);
     }
 
-    /** Return a Scanner reading from the file named NAME. */
-    private Scanner getInput(String name) {
+    /** Returns the n-gram order given by the argument ARG of the --ngrams
+     *  option. */
+    private int parseNgramOrder(String arg) {
         try {
-            return new Scanner(new File(name));
+            int order = Integer.parseInt(arg);
+            if (order >= 1) {
+                return order;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw error("--ngrams needs a positive n-gram length, not '%s'",
+                    arg);
+    }
+
+    /** Returns the group width given by the argument ARG of the --group
+     *  option. */
+    private int parseGroupWidth(String arg) {
+        try {
+            int width = Integer.parseInt(arg);
+            if (width >= 0) {
+                return width;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw error("--group needs a non-negative group width, not '%s'",
+                    arg);
+    }
+
+    /** Returns the input files named by NAMES, where each of NAMES is
+     *  either a file or a directory standing for the files in it whose
+     *  names end in ".in", in order of name. */
+    private static String[] batchInputs(String[] names) {
+        ArrayList<String> inputs = new ArrayList<>();
+        for (String name : names) {
+            File file = new File(name);
+            if (!file.isDirectory()) {
+                inputs.add(name);
+                continue;
+            }
+            File[] files = file.listFiles((dir, entry) ->
+                                          entry.endsWith(".in"));
+            if (files == null) {
+                throw error("could not read directory %s", name);
+            }
+            Arrays.sort(files);
+            for (File input : files) {
+                if (input.isFile()) {
+                    inputs.add(input.getPath());
+                }
+            }
+        }
+        if (inputs.isEmpty()) {
+            throw error("no input files for --batch");
+        }
+        return inputs.toArray(new String[0]);
+    }
+
+    /** Return a Reader reading from the file named NAME, which reports
+     *  input that is malformed in the default charset as an error. */
+    private Reader getInput(String name) {
+        try {
+            return Channels.newReader(FileChannel.open(Paths.get(name)),
+                                      Charset.defaultCharset().newDecoder(),
+                                      BUFFER_SIZE);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a Reader reading from the file named NAME through a
+     *  FileChannel, or from memory-mapped windows of it with --mmap. */
+    private Reader openInput(String name) {
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(name));
+            if (_mapped) {
+                return new MappedFileReader(channel, decoder());
+            }
+            return Channels.newReader(channel, decoder(), BUFFER_SIZE);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a Writer writing to the file named NAME through a
+     *  FileChannel, or into memory-mapped windows of it with --mmap. */
+    private Writer openOutput(String name) {
+        try {
+            FileChannel channel =
+                FileChannel.open(Paths.get(name), StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE,
+                                 StandardOpenOption.TRUNCATE_EXISTING);
+            if (_mapped) {
+                return new MappedFileWriter(channel, encoder());
+            }
+            return Channels.newWriter(channel, encoder(), BUFFER_SIZE);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Return a stream reading bytes from the file named NAME. */
+    private InputStream openByteInput(String name) {
+        try {
+            return new BufferedInputStream(new FileInputStream(name),
+                                           BUFFER_SIZE);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
-    /** Return a PrintStream writing to the file named NAME. */
-    private PrintStream getOutput(String name) {
+    /** Return a stream writing bytes to the file named NAME. */
+    private OutputStream openByteOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new BufferedOutputStream(new FileOutputStream(name),
+                                            BUFFER_SIZE);
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
     }
 
+    /** Returns a decoder for the default charset that replaces malformed
+     *  input, as Scanner does. */
+    private static CharsetDecoder decoder() {
+        return Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /** Returns an encoder for the default charset that replaces
+     *  unmappable characters, as PrintStream does. */
+    private static CharsetEncoder encoder() {
+        return Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  results to _output. Message lines are never held whole: each is
+     *  converted piece by piece as _input reads it, and the results are
+     *  grouped by _output and written out in large blocks. */
     private void process() {
-        Machine M = readConfig();
-        _config.close();
-        setUp(M, _input.nextLine());
-        while (_input.hasNextLine()) {
-            String nextln = _input.nextLine();
-            if (!checkIfSettings(M, nextln)) {
-                String translate = M.convert(nextln);
-                String ret = partitionMessage(translate);
-                _output.println(ret);
+        if (_compile) {
+            compileConfig();
+            return;
+        }
+        Machine M = loadConfig();
+        if (_compileRotors) {
+            System.err.printf("compiled rotor tables: %d bytes%n",
+                              M.compileRotors());
+        }
+        if (_crib != null || _bombeCrib != null
+            || _plugboardSettings != null) {
+            _pool = new ForkJoinPool(_jobs);
+        } else if (_parallelism > 0) {
+            _pool = new ForkJoinPool(_parallelism);
+        }
+        try {
+            if (_ngramOrder > 0) {
+                buildNgrams(M);
+            } else if (_crib != null) {
+                search(M);
+            } else if (_bombeCrib != null) {
+                bombe(M);
+            } else if (_plugboardSettings != null) {
+                solvePlugboard(M);
+            } else if (_byteSettings != null) {
+                processBytes(M);
+            } else if (_batchInputs != null) {
+                processBatch(M);
+            } else if (_serveAddress != null) {
+                serve(M);
             } else {
-                M.setRotors(_initialPos);
+                processMessages(M);
+            }
+        } finally {
+            if (_pool != null) {
+                _pool.shutdown();
             }
         }
-        _input.close();
-        _output.close();
     }
 
-    /** Return an Enigma machine configured from the contents of configuration
-     *  file _config. */
-    private Machine readConfig() {
+    /** Apply M, which is configured but has no rotors inserted, to the
+     *  messages in _input, sending the results to _output. */
+    private void processMessages(Machine M) {
         try {
-            String alph = _config.nextLine();
-            for (char letter: alph.toCharArray()) {
-                boolean isWS = Character.isWhitespace(letter);
-                if (letter == ')' || letter == '(' || letter == '*' || isWS) {
-                    throw new EnigmaException("Invalid alphabet "
-                            + "massed to Machine.");
-                }
+            if (!_input.nextLine()) {
+                throw error("no settings line in input");
             }
-            _alphabet = new Alphabet(alph);
-            int numRotors = _config.nextInt();
-            int numPawls = _config.nextInt();
-            _config.nextLine();
-            ArrayList<Rotor> allRotors = new ArrayList<Rotor>();
-            while (_config.hasNext()) {
-                Rotor currRotor = readRotor();
-                if (allRotors.contains(currRotor)) {
-                    throw new EnigmaException("Rotor repeated in "
-                            + "conf file sent to Main.");
+            setUp(M, _input.restOfLine());
+            MachineKernel kernel = _useKernel && _parallelism == 0
+                ? M.kernel() : null;
+            while (_input.nextLine()) {
+                boolean indented = false;
+                while (_input.peek() != -1
+                       && Character.isWhitespace(_input.peek())) {
+                    _input.skip();
+                    indented = true;
                 }
-                allRotors.add(currRotor);
+                if (_input.peek() == '*') {
+                    String line = _input.restOfLine();
+                    if (checkIfSettings(M, indented ? " " + line : line)) {
+                        if (kernel != null) {
+                            kernel = M.kernel();
+                        }
+                        continue;
+                    }
+                    writeGroups(line.toCharArray(), 0, line.length(), M,
+                                kernel);
+                } else {
+                    for (int len = _input.nextPiece(); len != -1;
+                         len = _input.nextPiece()) {
+                        writeGroups(_input.buffer(), _input.start(), len, M,
+                                    kernel);
+                    }
+                }
+                _output.endLine();
             }
-            return new Machine(_alphabet, numRotors, numPawls, allRotors);
-        } catch (NoSuchElementException excp) {
-            throw error("configuration file truncated");
+            _input.close();
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        } finally {
+            closeOutput();
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Converts every byte of _byteInput with M, which is configured but
+     *  has no rotors inserted, once set up by the settings line
+     *  _byteSettings, and writes the result to _byteOutput. The byte
+     *  whose unsigned value is K stands for the character of M's
+     *  alphabet with index K, so the alphabet must have 256 characters;
+     *  there are no settings lines, line breaks or groups in the input
+     *  or output, and the same settings convert the output back into the
+     *  input. */
+    private void processBytes(Machine M) {
+        if (M.alphabet().size() != Machine.BYTE_VALUES) {
+            throw error("--bytes needs an alphabet of %d characters",
+                        Machine.BYTE_VALUES);
+        }
+        setUp(M, _byteSettings);
+        try (InputStream in = new EnigmaInputStream(_byteInput, M);
+             OutputStream out = _byteOutput) {
+            in.transferTo(out);
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /** Searches for the rotors and settings of M, which is configured
+     *  but has no rotors inserted, under which the ciphertext in _input
+     *  decrypts to text starting with _crib, with no plugboard, on the
+     *  _jobs threads of _pool (see KeySearch). Prints a settings line for
+     *  each on the standard output, followed by the number of trials made
+     *  and their rate. */
+    private void search(Machine M) {
+        KeySearch search = new KeySearch(M, readCiphertext(), _crib, 0,
+                                         null);
+        for (KeySearch.Match match : search.search(_pool)) {
+            System.out.println(match);
+        }
+        long nanos = Math.max(1, search.nanos());
+        System.out.printf("%d trials in %.3f ms (%.0f trials/s)%n",
+                          search.trials(), nanos / 1e6,
+                          search.trials() * 1e9 / nanos);
+        System.out.flush();
+    }
+
+    /** Runs a bombe over the rotors of M, which is configured but has no
+     *  rotors inserted, for the settings and plugboard pairs under which
+     *  the ciphertext in _input decrypts to text starting with
+     *  _bombeCrib, on the _jobs threads of _pool (see Bombe). Prints a
+     *  settings line for each stop on the standard output, followed by
+     *  the number of stops, the number of rotor settings tried and their
+     *  rate. */
+    private void bombe(Machine M) {
+        Bombe bombe = new Bombe(M, readCiphertext(), _bombeCrib, 0);
+        List<Bombe.Stop> stops = bombe.run(_pool);
+        for (Bombe.Stop stop : stops) {
+            System.out.println(stop);
+        }
+        long nanos = Math.max(1, bombe.nanos());
+        System.out.printf("%d stops in %d settings in %.3f ms "
+                          + "(%.0f settings/s)%n", stops.size(),
+                          bombe.trials(), nanos / 1e6,
+                          bombe.trials() * 1e9 / nanos);
+        System.out.flush();
+    }
+
+    /** Finds the plugboard under which the ciphertext in _input was
+     *  encrypted by M, which is configured but has no rotors inserted,
+     *  set up by _plugboardSettings, whose plugboard is ignored, with
+     *  PLUGBOARD_RESTARTS climbs on the _jobs threads of _pool (see
+     *  PlugboardSolver), scoring by the n-gram table in the file named
+     *  _tableName if there is one. Prints the settings line with that
+     *  plugboard on the standard output, followed by the fitness of the
+     *  decryption and the time taken. */
+    private void solvePlugboard(Machine M) {
+        setUp(M, _plugboardSettings);
+        NgramTable table = null;
+        if (_tableName != null) {
+            try {
+                table = NgramFile.map(Paths.get(_tableName));
+            } catch (IOException | InvalidPathException excp) {
+                throw error("could not read %s: %s", _tableName,
+                            excp.getMessage());
+            }
+        }
+        long start = System.nanoTime();
+        PlugboardSolver.Solution solution =
+            new PlugboardSolver(M, readCiphertext(), table)
+            .solve(PLUGBOARD_RESTARTS, _pool, 0);
+        long nanos = System.nanoTime() - start;
+        String settings = _plugboardSettings;
+        int cycles = settings.indexOf('(');
+        if (cycles != -1) {
+            settings = settings.substring(0, cycles);
+        }
+        System.out.println((settings.trim() + " "
+                            + solution.plugboard()).trim());
+        System.out.printf("%s %.4f after %d climbs in %.3f ms%n",
+                          table == null ? "index of coincidence"
+                          : "log-likelihood", solution.fitness(),
+                          PLUGBOARD_RESTARTS, nanos / 1e6);
+        System.out.flush();
+    }
+
+    /** Counts the n-grams of _ngramOrder letters of the alphabet of M in
+     *  _corpus, which it closes, and writes the table of them to the file
+     *  named _ngramFile, quantized iff _quantize (see NgramFile). */
+    private void buildNgrams(Machine M) {
+        NgramTable table;
+        try (Reader corpus = _corpus) {
+            table = NgramTable.train(M.alphabet(), _ngramOrder, corpus);
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
         try {
-            String rotorName = _config.next();
-            char[] rotorSettings = _config.next().toCharArray();
-            String notches = "";
-            for (int index = 1; index < rotorSettings.length; index += 1) {
-                notches += rotorSettings[index];
+            NgramFile.write(Paths.get(_ngramFile), table, _quantize);
+        } catch (IOException | InvalidPathException excp) {
+            throw error("could not write %s: %s", _ngramFile,
+                        excp.getMessage());
+        }
+    }
+
+    /** Returns the whole of _input, which it closes. */
+    private String readCiphertext() {
+        StringBuilder ciphertext = new StringBuilder();
+        try {
+            while (_input.nextLine()) {
+                ciphertext.append(_input.restOfLine()).append('\n');
             }
-            String cycles = "";
-            Pattern cyc = Pattern.compile("\\s*\\([^()*]+\\)");
-            while (_config.hasNext(cyc)) {
-                cycles += _config.next(cyc);
+            _input.close();
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+        return ciphertext.toString();
+    }
+
+    /** Converts each file of _batchInputs with its own copy of M, which is
+     *  configured but has no rotors inserted, writing the result to a
+     *  file in the same directory whose name is the input's with
+     *  BATCH_SUFFIX added. Up to _jobs files are converted at once, on a
+     *  pool of worker threads. Reports the time each file took and the
+     *  overall throughput on the standard output once all are done; a
+     *  file that fails is reported and does not stop the others. */
+    private void processBatch(Machine M) {
+        String[] inputs = _batchInputs;
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.min(_jobs, inputs.length));
+        ArrayList<Future<Long>> timings = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (String input : inputs) {
+                timings.add(pool.submit(() -> {
+                    long fileStart = System.nanoTime();
+                    new Main(this, input, input + BATCH_SUFFIX)
+                        .processMessages(M.copy());
+                    return System.nanoTime() - fileStart;
+                }));
             }
-            if (_config.hasNext()) {
-                _config.nextLine();
+            long totalBytes = 0;
+            int failures = 0;
+            for (int index = 0; index < inputs.length; index += 1) {
+                long bytes = new File(inputs[index]).length();
+                try {
+                    long nanos = timings.get(index).get();
+                    totalBytes += bytes;
+                    System.out.printf("%s: %d bytes in %.3f ms (%s)%n",
+                                      inputs[index], bytes, nanos / 1e6,
+                                      throughput(bytes, nanos));
+                } catch (ExecutionException excp) {
+                    failures += 1;
+                    System.out.printf("%s: error: %s%n", inputs[index],
+                                      excp.getCause().getMessage());
+                }
             }
-            while (_config.hasNext(cyc)) {
-                cycles += _config.next(cyc);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%d files, %d bytes in %.3f ms (%s)%n",
+                              inputs.length - failures, totalBytes,
+                              nanos / 1e6, throughput(totalBytes, nanos));
+            System.out.flush();
+            if (failures > 0) {
+                throw error("%d of %d files failed", failures,
+                            inputs.length);
             }
-            Permutation rotorPerm = new Permutation(cycles, _alphabet);
-            char type = rotorSettings[0];
-            if (type == 'M') {
-                return new MovingRotor(rotorName, rotorPerm, notches);
-            } else if (type == 'N') {
-                if (!notches.equals("")) {
-                    throw new EnigmaException("Fixed rotor "
-                            + "cannot have notches.");
-                }
-                return new FixedRotor(rotorName, rotorPerm);
-            } else if (type == 'R') {
-                if (!notches.equals("")) {
-                    throw new EnigmaException("Reflector "
-                            + "cannot have notches.");
+        } catch (InterruptedException excp) {
+            throw error("batch interrupted");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Runs an EnigmaDaemon at _serveAddress until a client or a signal
+     *  shuts it down, converting the messages of each of its threads with
+     *  a copy of M, which is configured but has no rotors inserted, made
+     *  for that thread, and set up through a settings cache of its own.
+     *  Announces the address on the standard output, and the latencies
+     *  of the messages converted once the daemon has stopped. */
+    private void serve(Machine M) {
+        ThreadLocal<Main> workers =
+            ThreadLocal.withInitial(() -> new Main(this));
+        ThreadLocal<Machine> machines = ThreadLocal.withInitial(M::copy);
+        try {
+            EnigmaDaemon daemon = new EnigmaDaemon(
+                EnigmaDaemon.address(_serveAddress),
+                (settings, message) ->
+                    workers.get().convertRequest(machines.get(), settings,
+                                                 message));
+            Thread hook = new Thread(() -> {
+                daemon.shutdown();
+                try {
+                    daemon.awaitStopped();
+                } catch (InterruptedException excp) {
+                    /* Exiting anyway. */
                 }
-                return new Reflector(rotorName, rotorPerm);
-            } else {
-                throw new EnigmaException("Rotor must be a "
-                        + "moving rotor (M), fixed rotor (N) "
-                        + "or a reflector (R).");
+            });
+            Runtime.getRuntime().addShutdownHook(hook);
+            System.out.printf("listening on %s%n", daemon.address());
+            System.out.flush();
+            daemon.serve();
+            System.out.println(daemon.stats());
+            try {
+                Runtime.getRuntime().removeShutdownHook(hook);
+            } catch (IllegalStateException excp) {
+                /* Already shutting down. */
             }
-        } catch (NoSuchElementException excp) {
-            throw error("bad rotor description");
+        } catch (IOException excp) {
+            throw error("could not serve on %s: %s", _serveAddress,
+                        excp.getMessage());
         }
     }
 
-    /** Set M according to the specification given on SETTINGS,
-     *  which must have the format specified in the assignment.
-     *  In other words, settings should already have been checked in
-     *  process(). */
+    /** Returns MESSAGE converted by M, once set up by the settings line
+     *  SETTINGS, and grouped as the output of process is. M must be used
+     *  with no Main but me, since my cached settings refer to its
+     *  rotors. */
+    private String convertRequest(Machine M, String settings,
+                                  String message) {
+        setUp(M, settings);
+        char[] in = message.toCharArray();
+        char[] converted = new char[in.length];
+        int n = M.convert(in, 0, in.length, converted, 0);
+        StringWriter result = new StringWriter();
+        try (GroupWriter out = new GroupWriter(result, _groupWidth,
+                                               Math.max(1, n))) {
+            out.write(converted, 0, n);
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+        return result.toString();
+    }
+
+    /** Returns BYTES bytes per NANOS nanoseconds in megabytes a second. */
+    private static String throughput(long bytes, long nanos) {
+        return String.format("%.1f MB/s",
+                             nanos == 0 ? 0.0 : bytes * 1e3 / nanos);
+    }
+
+    /** Converts the LEN characters of IN starting at OFF with M, or with
+     *  KERNEL if it is not null, and adds the result to the current output
+     *  line. */
+    private void writeGroups(char[] in, int off, int len, Machine M,
+                             MachineKernel kernel) throws IOException {
+        char[] converted = _converted;
+        int n;
+        if (_parallelism > 0) {
+            n = M.convertParallel(in, off, len, converted, 0, _pool);
+        } else if (kernel != null) {
+            n = kernel.convert(in, off, len, converted, 0);
+        } else {
+            n = M.convert(in, off, len, converted, 0);
+        }
+        _output.write(converted, 0, n);
+    }
+
+    /** Writes out whatever output remains, even after an error, and
+     *  closes _output. */
+    private void closeOutput() {
+        try {
+            _output.close();
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
+        }
+    }
+
+    /** Return an Enigma machine configured from the snapshot of
+     *  configuration file _config, whose name is _configName with
+     *  SNAPSHOT_SUFFIX added, if it is there and up to date, and otherwise
+     *  by parsing _config. Closes _config. */
+    private Machine loadConfig() {
+        Path config = Paths.get(_configName);
+        Machine M = MachineSnapshot.load(
+            Paths.get(_configName + SNAPSHOT_SUFFIX), config);
+        if (M == null) {
+            M = readConfig();
+        } else {
+            _alphabet = M.alphabet();
+        }
+        closeConfig();
+        return M;
+    }
+
+    /** Parse configuration file _config and write a snapshot of it to the
+     *  file named _configName with SNAPSHOT_SUFFIX added. */
+    private void compileConfig() {
+        Path config = Paths.get(_configName);
+        try {
+            BasicFileAttributes stamp =
+                Files.readAttributes(config, BasicFileAttributes.class);
+            Machine M = readConfig();
+            closeConfig();
+            MachineSnapshot.write(Paths.get(_configName + SNAPSHOT_SUFFIX),
+                                  M, stamp);
+        } catch (IOException excp) {
+            throw error("could not write snapshot of %s: %s", _configName,
+                        excp.getMessage());
+        }
+    }
+
+    /** Return an Enigma machine configured from the contents of configuration
+     *  file _config (see ConfigParser). */
+    private Machine readConfig() {
+        try {
+            Machine M = new ConfigParser(_config, _configName).parse();
+            _alphabet = M.alphabet();
+            return M;
+        } catch (IOException excp) {
+            throw error("could not read %s: %s", _configName,
+                        excp.getMessage());
+        }
+    }
+
+    /** Closes _config. */
+    private void closeConfig() {
+        try {
+            _config.close();
+        } catch (IOException excp) {
+            throw error("could not close %s", _configName);
+        }
+    }
+
+    /** Set M according to the specification given on SETTINGS, which
+     *  must have the format specified in the assignment. The result is
+     *  cached in _setups, so that a settings line seen recently costs
+     *  only a lookup and a restore of M's settings. */
     private void setUp(Machine M, String settings) {
+        String key = SettingsCache.key(settings);
+        MachineSettings cached = _setups.get(key);
+        if (cached != null) {
+            M.restore(cached);
+        } else {
+            parseSettings(M, settings);
+            _setups.put(key, M.settings());
+        }
+    }
+
+    /** Set M according to the specification given on SETTINGS,
+     *  parsing it in full. */
+    private void parseSettings(Machine M, String settings) {
         String[] rotorsSel = new String[M.numRotors()];
         String initialPos = "";
         String plgbdCycles = "";
-        _settings = "* ";
         Scanner readSettings = new Scanner(settings);
         if (!readSettings.hasNext()) {
             throw new EnigmaException("Cannot have an empty settings line"
@@ -198,117 +928,177 @@ public final class Main {
             }
             String rotor = readSettings.next();
             rotorsSel[index] = rotor;
-            _settings += rotor + " ";
         }
         if (!readSettings.hasNext()) {
             throw new EnigmaException("Does not have initial settings.");
         }
         initialPos = readSettings.next();
-        _initialPos = initialPos;
-        _settings += initialPos;
         String rings = "";
 
         if (readSettings.hasNext(Pattern.compile("\\s*[^()*]+\\s*"))) {
             rings = readSettings.next();
         }
 
-        if (readSettings.hasNext(Pattern.compile("\\s*\\([^()*]\\)\\s*"))) {
+        if (readSettings.hasNext(Pattern.compile("\\s*\\([^()*]+\\)\\s*"))) {
             plgbdCycles = readSettings.nextLine();
-            _settings += " " + plgbdCycles;
         }
         M.insertRotors(rotorsSel);
         M.setRotors(initialPos);
-        M.setRings(rings);
+        if (!rings.isEmpty()) {
+            M.setRings(rings);
+        }
         if (!plgbdCycles.equals("")) {
             M.setPlugboard(new Permutation(plgbdCycles, _alphabet));
+        } else {
+            M.clearPlugboard();
         }
     }
 
     /** Checks if the input is a settings line and returns True if it is.
-     * If the input line IS a settings line, ignores it if it matches with
-     * the settings of the machine and errors otherwise. Does not error
-     * if there is a variable n >= 1 number of whitespace characters
-     * between entries.
+     * If the input line IS a settings line, sets M up by it, resetting
+     * the rotors if it repeats the current settings, and errors if it is
+     * malformed. Does not error if there is a variable n >= 1 number of
+     * whitespace characters between entries.
      * @param input The input from _input
      * @param M The machine
      */
     private boolean checkIfSettings(Machine M, String input) {
-        if (input.equals(_settings)) {
-            return true;
-        } else if (input.matches("\\s+") || input.equals("")) {
-            return false;
-        }
-        Scanner entries = new Scanner(input);
-        if (!entries.next().equals("*")) {
+        String key = SettingsCache.key(input);
+        if (!key.equals("*") && !key.startsWith("* ")) {
             return false;
         }
         setUp(M, input);
-        entries.close();
         return true;
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
+    /** Print MSG as a line of output in groups of five (except that the
+     *  last group may have fewer letters), or as configured by --group. */
     private void printMessageLine(String msg) {
-        String remainingString = msg;
-        String currentString = "";
-        for (int indices = 0; indices < msg.length(); indices += 5) {
-            currentString = remainingString.substring(0, 5);
-            System.out.println(currentString);
-            remainingString = remainingString.substring(5);
-        }
-        System.out.println(remainingString);
-        System.out.println();
-    }
-
-    /** Returns MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private String partitionMessage(String msg) {
-        String remainingString = msg;
-        String currentString = "";
-        String ret = "";
-        for (int indices = 0; indices < msg.length(); indices += 5) {
-            if (remainingString.length() < 5) {
-                currentString = remainingString;
-                remainingString = "";
-            } else {
-                currentString = remainingString.substring(0, 5);
-                remainingString = remainingString.substring(5);
-            }
-            if (indices == 0) {
-                ret += currentString;
-            } else {
-                ret += " " + currentString;
-            }
+        try {
+            _output.write(msg);
+            _output.endLine();
+        } catch (IOException excp) {
+            throw error("I/O error: %s", excp.getMessage());
         }
-        ret += remainingString;
-        return ret;
     }
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
 
     /** Source of input messages. */
-    private Scanner _input;
+    private MessageInput _input;
 
     /** Source of machine configuration. */
-    private Scanner _config;
+    private Reader _config;
+
+    /** Groups encoded/decoded messages and writes them to the output
+     *  file. */
+    private GroupWriter _output;
+
+    /** Converted characters of the piece of input being processed. */
+    private char[] _converted;
+
+    /** Characters read or written at a time. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Characters converted at a time with --parallel, enough to give
+     *  many threads a chunk each (see Machine.convertParallel). */
+    private static final int PARALLEL_BUFFER_SIZE = 1 << 22;
+
+    /** Added to the name of a configuration file to name its snapshot. */
+    static final String SNAPSHOT_SUFFIX = ".snap";
+
+    /** Added to the name of each input file of a batch to name its
+     *  output file. */
+    static final String BATCH_SUFFIX = ".out";
+
+    /** The number of letters in each output group unless --group says
+     *  otherwise. */
+    private static final int GROUP_SIZE = 5;
+
+    /** The most settings lines whose settings are kept in _setups. */
+    static final int SETTINGS_CACHE_SIZE = 1024;
+
+    /** The number of climbs made by --plugboard. */
+    static final int PLUGBOARD_RESTARTS = 64;
+
+    /** The settings of the settings lines used most recently. */
+    private final SettingsCache _setups =
+        new SettingsCache(SETTINGS_CACHE_SIZE);
+
+    /** True iff messages are converted through a MachineKernel. */
+    private boolean _useKernel;
+
+    /** The number of threads each message is converted on, or 0 to
+     *  convert messages serially. */
+    private int _parallelism;
+
+    /** The pool of threads work is spread over for the whole run: _jobs
+     *  threads searching for --search, --bombe and --plugboard, or
+     *  _parallelism threads converting messages, shared by every file of
+     *  a batch; null if there is no such work. */
+    private ForkJoinPool _pool;
+
+    /** True iff files are read and written through memory maps. */
+    private boolean _mapped;
+
+    /** The number of letters in each output group, or 0 for no
+     *  grouping. */
+    private int _groupWidth = GROUP_SIZE;
+
+    /** True iff many input files are converted (see processBatch). */
+    private boolean _batch;
+
+    /** The most files of a batch converted at once. */
+    private int _jobs = Runtime.getRuntime().availableProcessors();
+
+    /** The input files of a batch, or null if this is not a batch. */
+    private String[] _batchInputs;
+
+    /** The name of the configuration file. */
+    private String _configName;
+
+    /** True iff the configuration is to be compiled into a snapshot. */
+    private boolean _compile;
+
+    /** True iff the rotors' tables are to be compiled before converting. */
+    private boolean _compileRotors;
+
+    /** The address to serve messages on, or null if not serving. */
+    private String _serveAddress;
+
+    /** The crib given by --search, or null. */
+    private String _crib;
+
+    /** The crib given by --bombe, or null. */
+    private String _bombeCrib;
+
+    /** The settings line given by --plugboard, or null. */
+    private String _plugboardSettings;
+
+    /** The name of the n-gram table file given by --table, or null. */
+    private String _tableName;
+
+    /** The length of the n-grams counted by --ngrams, or 0. */
+    private int _ngramOrder;
+
+    /** True iff an n-gram table is written quantized. */
+    private boolean _quantize;
 
-    /** File for encoded/decoded messages. */
-    private PrintStream _output;
+    /** The training corpus of --ngrams. */
+    private Reader _corpus;
 
-    /** Configurations at start. Are ignored if passed again
-     * but errors if it changed later. */
-    private String _settings;
+    /** The name of the n-gram table file written by --ngrams. */
+    private String _ngramFile;
 
-    /** The rotors selected for the machine, ordered. */
-    private String[] _rotorsSel;
+    /** The settings line given by --bytes, or null. */
+    private String _byteSettings;
 
-    /** The cycles selected for the machine plugboard. */
-    private String _plgbdCycles;
+    /** The input of --bytes. */
+    private InputStream _byteInput;
 
-    /** The initial settings selected for the machine. */
-    private String _initialPos;
+    /** The output of --bytes. */
+    private OutputStream _byteOutput;
 
 
 }
@@ -4,6 +4,14 @@ import org.junit.Test;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
 import static enigma.TestUtils.*;
 
 /** The suite of all JUnit tests for the Main.
@@ -11,6 +19,242 @@ import static enigma.TestUtils.*;
  */
 public class MainTest {
 
+    /** A configuration holding the rotors of trivial.in. */
+    private static final String TRIVIAL_CONF =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " II ME     (FIXVYOMW) (CDKLHUP) (ESZ) (BJ) (GR) (NT) (A) (Q)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** Returns the output of Main run with configuration CONF on INPUT,
+     *  with options OPTIONS. */
+    private String runMain(String conf, String input, String... options)
+        throws IOException {
+        File confFile = File.createTempFile("enigma", ".conf");
+        File inFile = File.createTempFile("enigma", ".in");
+        File outFile = File.createTempFile("enigma", ".out");
+        try {
+            Files.writeString(confFile.toPath(), conf);
+            Files.writeString(inFile.toPath(), input);
+            String[] args = new String[options.length + 3];
+            System.arraycopy(options, 0, args, 0, options.length);
+            args[options.length] = confFile.getPath();
+            args[options.length + 1] = inFile.getPath();
+            args[options.length + 2] = outFile.getPath();
+            Main.main(args);
+            return Files.readString(outFile.toPath());
+        } finally {
+            confFile.delete();
+            inFile.delete();
+            outFile.delete();
+        }
+    }
+
+    /** Tests that Main splits lines as Scanner.nextLine did: at "\r\n",
+     *  '\n' or '\r', with blank lines kept, whitespace dropped, settings
+     *  lines recognized after leading whitespace and no extra line after
+     *  a final terminator. */
+    @Test
+    public void testLineEndings() throws IOException {
+        String input = "* B Beta I II III AAAA\r\nHELLO WORLD\r\n\r\n"
+            + "  \t \n  * B Beta I II III AAAA\rHELLOWORLD\n"
+            + "* B Beta I II III AAAA\nHELLOW\rORLD";
+        String nl = System.lineSeparator();
+        String expected = "ILBDA AMTAZ" + nl + nl + nl + "ILBDA AMTAZ" + nl
+            + "ILBDA A" + nl + "MTAZ" + nl;
+        for (String option : new String[] {"--kernel", "--mmap", "--"}) {
+            assertEquals(expected, runMain(TRIVIAL_CONF, input, option));
+        }
+    }
+
+    /** Tests that a message line longer than Main's buffers is grouped as
+     *  one line. */
+    @Test
+    public void testLongLine() throws IOException {
+        StringBuilder input = new StringBuilder("* B Beta I II III AAAA\n");
+        StringBuilder message = new StringBuilder();
+        for (int index = 0; index < 200000; index += 1) {
+            message.append((char) ('A' + index % 26));
+        }
+        input.append(message).append("\n");
+        String output = runMain(TRIVIAL_CONF, input.toString()).trim();
+        assertEquals(200000 / 5 * 6 - 1, output.length());
+        for (int index = 5; index < output.length(); index += 6) {
+            assertEquals(' ', output.charAt(index));
+        }
+    }
+
+    /** Tests that a settings line without ring settings leaves the rings
+     *  at their first letter, rather than being refused. */
+    @Test
+    public void testNoRings() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("SBIPK MUWAP" + nl,
+                     runMain(TRIVIAL_CONF,
+                             "* B Beta I II III AXLE\nHELLOWORLD\n"));
+        assertEquals("SBIPK MUWAP" + nl,
+                     runMain(TRIVIAL_CONF,
+                             "* B Beta I II III AXLE AAAA\nHELLOWORLD\n"));
+    }
+
+    /** Tests that plugboard cycles of more than one letter are used, and
+     *  that the same settings convert the output back. */
+    @Test
+    public void testPlugboardCycles() throws IOException {
+        String settings = "* B Beta I II III AAAA (HQE) (LO)\n";
+        String nl = System.lineSeparator();
+        assertEquals("CPNMU AUTMZ" + nl,
+                     runMain(TRIVIAL_CONF, settings + "HELLOWORLD\n"));
+        assertEquals("HELLO WORLD" + nl,
+                     runMain(TRIVIAL_CONF, settings + "CPNMUAUTMZ\n"));
+    }
+
+    /** Tests the --group option. */
+    @Test
+    public void testGroupWidth() throws IOException {
+        String input = "* B Beta I II III AAAA\nHELLO WORLD\n";
+        String nl = System.lineSeparator();
+        assertEquals("ILB DAA MTA Z" + nl,
+                     runMain(TRIVIAL_CONF, input, "--group", "3"));
+        assertEquals("ILBDAAMTAZ" + nl,
+                     runMain(TRIVIAL_CONF, input, "--group", "0"));
+    }
+
+    /** TRIVIAL_CONF with a fourth moving rotor, so that settings lines
+     *  may choose among the rotors. */
+    private static final String FOUR_ROTOR_CONF = TRIVIAL_CONF
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n";
+
+    /** Returns the output of Main run with configuration CONF on the
+     *  messages MESSAGE, each following the settings line of the same
+     *  index in SETTINGS, and checks that it is what each settings line
+     *  gives as the first line of an input of its own. */
+    private String checkEachAsFirst(String conf, String[] settings,
+                                    String[] messages, String... options)
+        throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int index = 0; index < settings.length; index += 1) {
+            String message = settings[index] + "\n" + messages[index] + "\n";
+            input.append(message);
+            expected.append(runMain(conf, message));
+        }
+        String output = runMain(conf, input.toString(), options);
+        assertEquals(expected.toString(), output);
+        return output;
+    }
+
+    /** Tests that each of several recurring settings lines, whatever its
+     *  rotors, rings and plugboard, sets the machine up as it would for a
+     *  message of its own, however often it recurs. */
+    @Test
+    public void testRecurringSettings() throws IOException {
+        String[] lines = {
+            "* B Beta I II III AAAA (HQ) (EX)",
+            "* B  Beta III I II AXLE",
+            "* B Beta I II III AAAA BCDE",
+        };
+        String[] settings = new String[3 * lines.length];
+        String[] messages = new String[settings.length];
+        for (int index = 0; index < settings.length; index += 1) {
+            settings[index] = lines[index % lines.length];
+            messages[index] = "HELLOWORLD";
+        }
+        for (String option : new String[] {"--kernel", "--"}) {
+            checkEachAsFirst(TRIVIAL_CONF, settings, messages, option);
+        }
+    }
+
+    /** Tests that a later settings line may choose rotors that an earlier
+     *  one left out. */
+    @Test
+    public void testLaterSettingsRotors() throws IOException {
+        String nl = System.lineSeparator();
+        assertEquals("ILBDA AMTAZ" + nl + "PZZYY SQAVH" + nl,
+                     checkEachAsFirst(FOUR_ROTOR_CONF, new String[] {
+                             "* B Beta I II III AAAA",
+                             "* B Beta IV II III AAAA",
+                         }, new String[] {"HELLOWORLD", "HELLOWORLD"}));
+    }
+
+    /** Tests that a later settings line without plugboard cycles removes
+     *  the plugboard of an earlier one. */
+    @Test
+    public void testLaterSettingsPlugboard() throws IOException {
+        checkEachAsFirst(TRIVIAL_CONF, new String[] {
+                "* B Beta I II III AAAA (HQ) (EX) (LO)",
+                "* B Beta I II III AAAA",
+            }, new String[] {"HELLOWORLD", "HELLOWORLD"});
+    }
+
+    /** Tests that the ring settings of a later settings line are kept. */
+    @Test
+    public void testLaterSettingsRings() throws IOException {
+        checkEachAsFirst(TRIVIAL_CONF, new String[] {
+                "* B Beta I II III AAAA",
+                "* B Beta I II III AAAA BCDE",
+            }, new String[] {"HELLOWORLD", "HELLOWORLD"});
+    }
+
+    /** Tests that --compile-rotors converts as Main does without it, and
+     *  reports the bytes taken by the tables of every rotor. */
+    @Test
+    public void testCompileRotors() throws IOException {
+        String input = "* B Beta I II III AAAA\nHELLO WORLD\n";
+        PrintStream stderr = System.err;
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        try {
+            System.setErr(new PrintStream(report, true));
+            assertEquals(runMain(TRIVIAL_CONF, input),
+                         runMain(TRIVIAL_CONF, input, "--compile-rotors"));
+        } finally {
+            System.setErr(stderr);
+        }
+        assertTrue(report.toString().contains(
+                       5 * Rotor.compiledBytes(26) + " bytes"));
+    }
+
+    /** Tests that --batch converts each ".in" file of a directory into
+     *  the file named by adding Main.BATCH_SUFFIX, as a run of Main on
+     *  that file alone would, and reports on each. */
+    @Test
+    public void testBatch() throws IOException {
+        String[] inputs = {
+            "* B Beta I II III AAAA\nHELLO WORLD\n",
+            "* B Beta I II III AAAA\nHELLOWORLD\n* B Beta I II III AAAB\nX\n",
+            "* B Beta I II III AAAA\n",
+        };
+        Path dir = Files.createTempDirectory("enigma");
+        Path conf = dir.resolve("trivial.conf");
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        try {
+            Files.writeString(conf, TRIVIAL_CONF);
+            for (int index = 0; index < inputs.length; index += 1) {
+                Files.writeString(dir.resolve(index + ".in"), inputs[index]);
+            }
+            System.setOut(new PrintStream(summary, true));
+            Main.main("--batch", "--jobs", "2", conf.toString(),
+                      dir.toString());
+            System.setOut(stdout);
+            for (int index = 0; index < inputs.length; index += 1) {
+                Path output = dir.resolve(index + ".in" + Main.BATCH_SUFFIX);
+                assertEquals(runMain(TRIVIAL_CONF, inputs[index]),
+                             Files.readString(output));
+            }
+            assertTrue(summary.toString().contains("3 files"));
+        } finally {
+            System.setOut(stdout);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(dir);
+        }
+    }
+
     /**
      * Tests that Main correctly parses a correct file and
      * outputs the correct encryption.
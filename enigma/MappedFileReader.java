@@ -0,0 +1,138 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+
+/** A Reader that decodes a file straight out of memory-mapped windows of
+ *  it, so that its bytes go from the page cache to characters without
+ *  passing through any other buffer. Windows are at most WINDOW bytes
+ *  long, so files of any size can be read; a character split across two
+ *  windows is decoded from the start of the next.
+ *  @author Evelyn Vo
+ */
+class MappedFileReader extends Reader {
+
+    /** A reader of the whole of the file open on CHANNEL, decoded with
+     *  DECODER. */
+    MappedFileReader(FileChannel channel, CharsetDecoder decoder)
+        throws IOException {
+        this(channel, decoder, WINDOW);
+    }
+
+    /** A reader of the file open on CHANNEL, decoded with DECODER, that
+     *  maps WINDOWSIZE bytes at a time. WINDOWSIZE must be at least the
+     *  longest encoding of a character. */
+    MappedFileReader(FileChannel channel, CharsetDecoder decoder,
+                     int windowSize) throws IOException {
+        _channel = channel;
+        _decoder = decoder;
+        _windowSize = windowSize;
+        _size = channel.size();
+        map(0);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (_pending != -1) {
+            cbuf[off] = (char) _pending;
+            _pending = -1;
+            return 1;
+        }
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            if (_flushed) {
+                return -1;
+            }
+            boolean last = _base + _window.limit() == _size;
+            CoderResult result = _decoder.decode(_window, out, last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow() && out.position() == off) {
+                return readPair(cbuf, off, last);
+            }
+            if (last && result.isUnderflow()) {
+                _decoder.flush(out);
+                _flushed = true;
+            }
+            if (out.position() > off) {
+                return out.position() - off;
+            }
+            if (!last) {
+                map(_base + _window.position());
+            }
+        }
+    }
+
+    /** Decodes the next character, which takes two chars (a surrogate
+     *  pair), from my window, whose last byte is the last of the file iff
+     *  LAST; stores its first char in CBUF[OFF], keeps the second for the
+     *  next read, and returns 1. */
+    private int readPair(char[] cbuf, int off, boolean last)
+        throws IOException {
+        CharBuffer pair = CharBuffer.allocate(2);
+        CoderResult result = _decoder.decode(_window, pair, last);
+        if (result.isError()) {
+            result.throwException();
+        }
+        pair.flip();
+        cbuf[off] = pair.get();
+        if (pair.hasRemaining()) {
+            _pending = pair.get();
+        }
+        return 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        _window = null;
+        _channel.close();
+    }
+
+    /** Maps the window of the file starting at byte POSITION. */
+    private void map(long position) throws IOException {
+        long length = Math.min(_windowSize, _size - position);
+        _window = _channel.map(FileChannel.MapMode.READ_ONLY, position,
+                               length);
+        _base = position;
+    }
+
+    /** The largest number of bytes mapped at once. */
+    static final int WINDOW = 1 << 26;
+
+    /** The file read. */
+    private final FileChannel _channel;
+
+    /** Decodes the file. */
+    private final CharsetDecoder _decoder;
+
+    /** The largest number of bytes I map at once. */
+    private final int _windowSize;
+
+    /** The size of the file. */
+    private final long _size;
+
+    /** The mapped window being decoded. */
+    private MappedByteBuffer _window;
+
+    /** The position in the file of the start of _window. */
+    private long _base;
+
+    /** True iff the whole file has been decoded and the decoder
+     *  flushed. */
+    private boolean _flushed;
+
+    /** The second char of a surrogate pair only half of which has been
+     *  read, or -1. */
+    private int _pending = -1;
+
+}
@@ -0,0 +1,105 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/** The suite of all JUnit tests for the MappedFileReader and
+ *  MappedFileWriter classes.
+ *  @author Evelyn Vo
+ */
+public class MappedFileTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Text with characters of one, two, three and four bytes in UTF-8,
+     *  so that some fall across the edges of small windows. */
+    private static final String TEXT;
+    static {
+        StringBuilder text = new StringBuilder();
+        for (int index = 0; index < 500; index += 1) {
+            text.append("AB\u00E9\u4E2D\uD83D\uDE00 \n".charAt(index % 8));
+        }
+        TEXT = text.append("\uD83D\uDE00").toString();
+    }
+
+    /** Returns the contents of the file FILE read through a
+     *  MappedFileReader with windows of WINDOW bytes, BLOCK characters at
+     *  a time. */
+    private String readMapped(File file, int window, int block)
+        throws IOException {
+        StringBuilder result = new StringBuilder();
+        try (Reader reader =
+             new MappedFileReader(FileChannel.open(file.toPath()),
+                                  StandardCharsets.UTF_8.newDecoder(),
+                                  window)) {
+            char[] buffer = new char[block];
+            for (int n = reader.read(buffer); n != -1;
+                 n = reader.read(buffer)) {
+                result.append(buffer, 0, n);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Checks that files are read whole, whatever the window size. */
+    @Test
+    public void testRead() throws IOException {
+        File file = File.createTempFile("enigma", ".txt");
+        try {
+            Files.writeString(file.toPath(), TEXT, StandardCharsets.UTF_8);
+            for (int window : new int[] {4, 7, 64, 1 << 20}) {
+                for (int block : new int[] {1, 3, 1000}) {
+                    assertEquals("window " + window + ", block " + block,
+                                 TEXT, readMapped(file, window, block));
+                }
+            }
+            Files.writeString(file.toPath(), "");
+            assertEquals("", readMapped(file, 16, 16));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Checks that writes spanning many windows land in order and that the
+     *  file is cut to what was written. */
+    @Test
+    public void testWrite() throws IOException {
+        File file = File.createTempFile("enigma", ".txt");
+        try {
+            Files.writeString(file.toPath(), TEXT + TEXT);
+            for (int window : new int[] {5, 64, 1 << 20}) {
+                try (Writer writer = new MappedFileWriter(
+                         FileChannel.open(file.toPath(),
+                                          StandardOpenOption.READ,
+                                          StandardOpenOption.WRITE,
+                                          StandardOpenOption.TRUNCATE_EXISTING),
+                         StandardCharsets.UTF_8.newEncoder(), window)) {
+                    for (int start = 0; start < TEXT.length(); start += 10) {
+                        int end = Math.min(start + 10, TEXT.length());
+                        writer.write(TEXT.toCharArray(), start, end - start);
+                    }
+                }
+                assertEquals("window " + window, TEXT,
+                             Files.readString(file.toPath(),
+                                              StandardCharsets.UTF_8));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/** A Writer that encodes straight into memory-mapped windows of a file,
+ *  extending the file a window at a time and cutting it back to what
+ *  was written when closed. Each call to write is encoded on its own,
+ *  so a surrogate pair must not be split between calls.
+ *  @author Evelyn Vo
+ */
+class MappedFileWriter extends Writer {
+
+    /** A writer to the file open for reading and writing on CHANNEL,
+     *  which it replaces, encoding with ENCODER. */
+    MappedFileWriter(FileChannel channel, CharsetEncoder encoder)
+        throws IOException {
+        this(channel, encoder, MappedFileReader.WINDOW);
+    }
+
+    /** A writer to the file open for reading and writing on CHANNEL,
+     *  which it replaces, encoding with ENCODER and mapping WINDOWSIZE
+     *  bytes at a time. */
+    MappedFileWriter(FileChannel channel, CharsetEncoder encoder,
+                     int windowSize) throws IOException {
+        _channel = channel;
+        _encoder = encoder;
+        _windowSize = windowSize;
+        map(0);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        CharBuffer in = CharBuffer.wrap(cbuf, off, len);
+        _encoder.reset();
+        while (true) {
+            CoderResult result = _encoder.encode(in, _window, true);
+            if (result.isUnderflow()) {
+                result = _encoder.flush(_window);
+            }
+            if (result.isOverflow()) {
+                map(_base + _window.position());
+            } else if (result.isError()) {
+                result.throwException();
+            } else {
+                return;
+            }
+        }
+    }
+
+    /** Does nothing: what I write is already in the file's pages. */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (_window != null) {
+            long size = _base + _window.position();
+            _window = null;
+            _channel.truncate(size);
+            _channel.close();
+        }
+    }
+
+    /** Maps the window of the file starting at byte POSITION, extending
+     *  the file as needed. */
+    private void map(long position) throws IOException {
+        _window = _channel.map(FileChannel.MapMode.READ_WRITE, position,
+                               _windowSize);
+        _base = position;
+    }
+
+    /** The file written. */
+    private final FileChannel _channel;
+
+    /** Encodes the output. */
+    private final CharsetEncoder _encoder;
+
+    /** The number of bytes I map at once. */
+    private final int _windowSize;
+
+    /** The mapped window being written, or null once I am closed. */
+    private MappedByteBuffer _window;
+
+    /** The position in the file of the start of _window. */
+    private long _base;
+
+}
@@ -0,0 +1,161 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/** A source of message lines that hands out each line in pieces taken
+ *  straight from one large, reused buffer, so that a line of any length
+ *  is read in bounded memory and without being copied into a String.
+ *  Lines end as they do for Scanner.nextLine: at "\r\n" or at any one of
+ *  '\n', '\r', '\u2028', '\u2029' and '\u0085'. The terminators are not
+ *  part of the line.
+ *  @author Evelyn Vo
+ */
+class MessageInput {
+
+    /** A source reading from READER through a buffer of CAPACITY
+     *  characters. */
+    MessageInput(Reader reader, int capacity) {
+        _reader = reader;
+        _buffer = new char[capacity];
+    }
+
+    /** Skips whatever remains of the current line and starts the next one.
+     *  Returns false if there is no next line. */
+    boolean nextLine() throws IOException {
+        while (nextPiece() != -1) {
+            continue;
+        }
+        if (!available()) {
+            return false;
+        }
+        _inLine = true;
+        return true;
+    }
+
+    /** Returns the length of the next piece of the current line, which
+     *  starts at buffer()[start()], and consumes it; or returns -1, having
+     *  consumed the line terminator, if the line has ended. The piece is
+     *  valid only until the next call on me. */
+    int nextPiece() throws IOException {
+        if (!_inLine) {
+            return -1;
+        }
+        if (!available()) {
+            _inLine = false;
+            return -1;
+        }
+        char[] buf = _buffer;
+        int end = _end;
+        int index;
+        for (index = _pos; index < end; index += 1) {
+            if (isTerminator(buf[index])) {
+                break;
+            }
+        }
+        _start = _pos;
+        if (index == _pos) {
+            _skipNewline = buf[index] == '\r';
+            _pos = index + 1;
+            _inLine = false;
+            return -1;
+        }
+        _pos = index;
+        return index - _start;
+    }
+
+    /** Returns the buffer holding the last piece. */
+    char[] buffer() {
+        return _buffer;
+    }
+
+    /** Returns the index in buffer() of the start of the last piece. */
+    int start() {
+        return _start;
+    }
+
+    /** Returns the next character of the current line without consuming
+     *  it, or -1 if the line has ended. */
+    int peek() throws IOException {
+        if (!_inLine || !available() || isTerminator(_buffer[_pos])) {
+            return -1;
+        }
+        return _buffer[_pos];
+    }
+
+    /** Consumes the character last returned by peek, which must not have
+     *  been -1. */
+    void skip() {
+        _pos += 1;
+    }
+
+    /** Consumes the rest of the current line and returns it. */
+    String restOfLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int len = nextPiece(); len != -1; len = nextPiece()) {
+            line.append(_buffer, _start, len);
+        }
+        return line.toString();
+    }
+
+    /** Closes my source. */
+    void close() throws IOException {
+        _reader.close();
+    }
+
+    /** Returns true iff CH ends a line. */
+    private static boolean isTerminator(char ch) {
+        if (ch <= '\r') {
+            return ch == '\n' || ch == '\r';
+        }
+        return ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+    /** Ensures that the buffer holds at least one unread character,
+     *  dropping the '\n' of a "\r\n" pair. Returns false at the end of
+     *  input. */
+    private boolean available() throws IOException {
+        while (true) {
+            while (_pos == _end) {
+                int n = _reader.read(_buffer, 0, _buffer.length);
+                if (n == -1) {
+                    return false;
+                }
+                _pos = 0;
+                _end = n;
+            }
+            if (_skipNewline) {
+                _skipNewline = false;
+                if (_buffer[_pos] == '\n') {
+                    _pos += 1;
+                    continue;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** The source of characters. */
+    private final Reader _reader;
+
+    /** Characters read from _reader. */
+    private final char[] _buffer;
+
+    /** The index in _buffer of the next unread character. */
+    private int _pos;
+
+    /** The number of characters in _buffer. */
+    private int _end;
+
+    /** The index in _buffer of the start of the last piece. */
+    private int _start;
+
+    /** True iff a line has been started and its terminator not yet
+     *  read. */
+    private boolean _inLine;
+
+    /** True iff the last line ended in '\r', so that a '\n' immediately
+     *  following it is part of the same terminator. */
+    private boolean _skipNewline;
+
+}
@@ -16,6 +16,10 @@ class MovingRotor extends Rotor {
         super(name, perm);
         checkNotches(notches);
         _notches = notches;
+        _notchTable = new boolean[size()];
+        for (char ch: notches.toCharArray()) {
+            _notchTable[alphabet().toInt(ch)] = true;
+        }
     }
 
     /** Checks if every letter in the notches is in
@@ -34,11 +38,13 @@ class MovingRotor extends Rotor {
      *  to advance. */
     @Override
     boolean atNotch() {
-        char currLetter = permutation().alphabet().toChar(setting());
-        if (_notches.indexOf(currLetter) != -1) {
-            return true;
-        }
-        return false;
+        return _notchTable[setting()];
+    }
+
+    /** Return the table whose K-th entry is true iff setting K is one of
+     *  my notches. The array is shared and must not be modified. */
+    boolean[] notchTable() {
+        return _notchTable;
     }
 
     /** Return true iff I have a ratchet and can move.
@@ -48,6 +54,11 @@ class MovingRotor extends Rotor {
         return true;
     }
 
+    @Override
+    MovingRotor copy() {
+        return withTables(new MovingRotor(name(), permutation(), _notches));
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     @Override
     void advance() {
@@ -57,4 +68,7 @@ class MovingRotor extends Rotor {
     /** The notches of the rotor. */
     private String _notches;
 
+    /** _notchTable[k] is true iff setting K is at one of _notches. */
+    private boolean[] _notchTable;
+
 }
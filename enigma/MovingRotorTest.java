@@ -191,6 +191,42 @@ public class MovingRotorTest {
         assertFalse(rotor.atNotch());
     }
 
+    /** Checks that a compiled rotor converts exactly as an uncompiled one
+     *  at every setting, that its table size is reported, and that its
+     *  copies keep its tables. */
+    @Test
+    public void checkCompiled() {
+        for (String name : new String[] {"I", "IV", "VIII", "Beta"}) {
+            setRotor(name, NAVALA, "");
+            Rotor plain = rotor;
+            setRotor(name, NAVALA, "");
+            assertFalse(rotor.compiled());
+            assertEquals(0, rotor.tableBytes());
+            rotor.compile();
+            assertTrue(rotor.compiled());
+            assertEquals(Rotor.compiledBytes(26), rotor.tableBytes());
+            for (int k = 0; k < 26; k += 1) {
+                plain.set(k);
+                rotor.set(k);
+                for (int p = 0; p < 26; p += 1) {
+                    String testId = msg(name, "setting %d, contact %d", k, p);
+                    assertEquals(testId, plain.convertForward(p),
+                                 rotor.convertForward(p));
+                    assertEquals(testId, plain.convertBackward(p),
+                                 rotor.convertBackward(p));
+                }
+            }
+        }
+        setRotor("I", NAVALA, "");
+        rotor.compile();
+        rotor.set(1);
+        checkRotor("Compiled rotor I (B)", UPPER_STRING, NAVALB_MAP.get("I"));
+        rotor = rotor.copy();
+        assertTrue(rotor.compiled());
+        rotor.set(1);
+        checkRotor("Copied rotor I (B)", UPPER_STRING, NAVALB_MAP.get("I"));
+    }
+
     /** Checks that the constructor errors on incorrect notches (letters not
      * in alphabet). */
     @Test(expected = EnigmaException.class)
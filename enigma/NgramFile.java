@@ -0,0 +1,181 @@
+package enigma;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/** Files holding NgramTables, which are mapped into memory read-only to
+ *  be used, so that a table is built from its corpus once, is loaded
+ *  without reading the file through, and is shared by every process
+ *  scoring with it through the page cache. A table's logarithms are
+ *  stored densely, in the order of the n-grams' numbers, either as
+ *  floats or quantized to unsigned shorts, the number of steps of a
+ *  fixed size above the table's floor, which halves the file at a cost
+ *  of at most half a step in each logarithm. All numbers are
+ *  big-endian:
+ *      int     MAGIC
+ *      int     VERSION
+ *      int     order of the n-grams
+ *      string  alphabet
+ *      byte    'F' if the logarithms are floats, 'Q' if quantized
+ *      float   floor
+ *      float   size of a step, or 0 if the logarithms are floats
+ *      zero bytes, up to a multiple of ALIGNMENT bytes
+ *      float[n] or short[n], the logarithms, n being the number of
+ *              n-grams
+ *  where a string is an int length followed by that many chars.
+ *  @author Evelyn Vo
+ */
+final class NgramFile {
+
+    /** Not instantiable. */
+    private NgramFile() {
+    }
+
+    /** Writes TABLE to the file FILE, quantizing its logarithms iff
+     *  QUANTIZE. The file is written to a temporary file and moved into
+     *  place, so that a reader never sees it half written. */
+    static void write(Path file, NgramTable table, boolean quantize)
+        throws IOException {
+        int size = table.size();
+        float floor = (float) table.floor();
+        float step = 0;
+        if (quantize) {
+            double max = floor;
+            for (int ngram = 0; ngram < size; ngram += 1) {
+                max = Math.max(max, table.logProbability(ngram));
+            }
+            step = (float) ((max - floor) / NgramTable.STEP_MASK);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(table.order());
+            writeString(out, table.alphabet().toString());
+            out.writeByte(quantize ? 'Q' : 'F');
+            out.writeFloat(floor);
+            out.writeFloat(step);
+            while (out.size() % ALIGNMENT != 0) {
+                out.writeByte(0);
+            }
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes.toByteArray());
+        Path temporary = Files.createTempFile(file.toAbsolutePath()
+                                              .getParent(), "enigma", ".tmp");
+        try {
+            try (FileChannel channel =
+                     FileChannel.open(temporary, StandardOpenOption.READ,
+                                      StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                MappedByteBuffer data =
+                    channel.map(FileChannel.MapMode.READ_WRITE,
+                                header.capacity(),
+                                (long) size * (quantize ? 2 : 4));
+                if (quantize) {
+                    ShortBuffer steps = data.asShortBuffer();
+                    for (int ngram = 0; ngram < size; ngram += 1) {
+                        steps.put(quantize(table.logProbability(ngram),
+                                           floor, step));
+                    }
+                } else {
+                    FloatBuffer floats = data.asFloatBuffer();
+                    for (int ngram = 0; ngram < size; ngram += 1) {
+                        floats.put((float) table.logProbability(ngram));
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /** Returns the number of steps of size STEP above FLOOR nearest to
+     *  LOG, as an unsigned short. */
+    private static short quantize(double log, float floor, float step) {
+        if (step == 0) {
+            return 0;
+        }
+        long steps = Math.round((log - floor) / step);
+        return (short) Math.max(0, Math.min(NgramTable.STEP_MASK, steps));
+    }
+
+    /** Returns the table in the file FILE, which it maps into memory
+     *  read-only. Throws an EnigmaException if FILE is not such a file,
+     *  is of another version, or is damaged. */
+    static NgramTable map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                        channel.size());
+            if (in.getInt() != MAGIC) {
+                throw new EnigmaException(file + " is not an n-gram table.");
+            } else if (in.getInt() != VERSION) {
+                throw new EnigmaException(file + " is an n-gram table of "
+                                          + "another version.");
+            }
+            int order = in.getInt();
+            Alphabet alphabet = Alphabet.trusted(readString(in));
+            byte format = in.get();
+            float floor = in.getFloat();
+            float step = in.getFloat();
+            in.position((in.position() + ALIGNMENT - 1)
+                        / ALIGNMENT * ALIGNMENT);
+            ByteBuffer data = in.slice();
+            if (format == 'F' && data.remaining() % 4 == 0) {
+                return new NgramTable(alphabet, order, floor,
+                                      data.asFloatBuffer(), null, 0);
+            } else if (format == 'Q' && data.remaining() % 2 == 0) {
+                return new NgramTable(alphabet, order, floor, null,
+                                      data.asShortBuffer(), step);
+            }
+            throw new EnigmaException(file + " is a damaged n-gram table.");
+        } catch (BufferUnderflowException | IllegalArgumentException excp) {
+            throw new EnigmaException(file + " is a damaged n-gram table.");
+        }
+    }
+
+    /** Writes STR to OUT as a table string. */
+    private static void writeString(DataOutputStream out, String str)
+        throws IOException {
+        out.writeInt(str.length());
+        out.writeChars(str);
+    }
+
+    /** Reads a table string from IN. */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || 2L * length > in.remaining()) {
+            throw new EnigmaException("Bad string in n-gram table.");
+        }
+        char[] chars = new char[length];
+        in.asCharBuffer().get(chars);
+        in.position(in.position() + 2 * length);
+        return new String(chars);
+    }
+
+    /** The first four bytes of every table: "NGRM" in ASCII. */
+    static final int MAGIC = 0x4E47524D;
+
+    /** The version of the table format that write produces and map
+     *  accepts. */
+    static final int VERSION = 1;
+
+    /** The logarithms start at a multiple of this many bytes. */
+    static final int ALIGNMENT = 8;
+
+}
@@ -0,0 +1,108 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+
+/** The suite of all JUnit tests for the NgramFile class.
+ *  @author Evelyn Vo
+ */
+public class NgramFileTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /** An alphabet of upper- and lower-case letters, '_' and '.', as in
+     *  some of the testing configurations. */
+    private static final Alphabet MIXED = new Alphabet(
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz_.");
+
+    /** A short training corpus. */
+    private static final String CORPUS =
+        "The_quick_brown_fox_jumps_over_the_lazy_dog.\n"
+        + "Pack my box with five dozen liquor jugs.\n"
+        + "How_vexingly_quick_daft_zebras_jump.";
+
+    /** Checks that a table written as floats maps back exactly, and one
+     *  written quantized to within a step, with its order and
+     *  alphabet. */
+    @Test
+    public void testRoundTrip() throws IOException {
+        NgramTable table =
+            NgramTable.train(MIXED, 3, new StringReader(CORPUS));
+        Path file = Files.createTempFile("enigma", ".ngrams");
+        try {
+            for (boolean quantize : new boolean[] {false, true}) {
+                NgramFile.write(file, table, quantize);
+                NgramTable mapped = NgramFile.map(file);
+                assertEquals(quantize, mapped.quantized());
+                assertEquals(3, mapped.order());
+                assertEquals(MIXED.toString(), mapped.alphabet().toString());
+                assertEquals(table.floor(), mapped.floor(), 0);
+                double tolerance = quantize ? -table.floor() / 65535 : 0;
+                for (int ngram = 0; ngram < table.size(); ngram += 1) {
+                    assertEquals(table.logProbability(ngram),
+                                 mapped.logProbability(ngram), tolerance);
+                }
+                long expected = (quantize ? 2L : 4L) * table.size();
+                assertTrue(Files.size(file) >= expected);
+                assertTrue(Files.size(file) < expected + 256);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Checks that a corpus is counted through the alphabet, skipping
+     *  other characters without breaking n-grams. */
+    @Test
+    public void testTrainFromCorpus() throws IOException {
+        NgramTable bigrams =
+            NgramTable.train(MIXED, 2, new StringReader("ab c\nab"));
+        int ab = bigrams.next(bigrams.next(0, MIXED.toInt('a')),
+                              MIXED.toInt('b'));
+        int bc = bigrams.next(bigrams.next(0, MIXED.toInt('b')),
+                              MIXED.toInt('c'));
+        assertEquals(Math.log10(2.0 / 4), bigrams.logProbability(ab), 1e-6);
+        assertEquals(Math.log10(1.0 / 4), bigrams.logProbability(bc), 1e-6);
+    }
+
+    /** Checks that a file that is not a table is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testNotATable() throws IOException {
+        Path file = Files.createTempFile("enigma", ".ngrams");
+        try {
+            Files.write(file, "not a table at all".getBytes("US-ASCII"));
+            NgramFile.map(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Checks that a truncated table is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testTruncated() throws IOException {
+        NgramTable table =
+            NgramTable.train(MIXED, 2, new StringReader(CORPUS));
+        Path file = Files.createTempFile("enigma", ".ngrams");
+        try {
+            NgramFile.write(file, table, false);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+            NgramFile.map(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/** The base-10 logarithms of the probabilities of the n-grams of one
+ *  order, the strings of that many letters, over an alphabet, used by
+ *  TextScorer to score text. An n-gram is numbered by reading its letters'
+ *  indices as the digits of a number in base the size of the alphabet,
+ *  first letter most significant, so that the n-gram ending at a letter
+ *  is numbered from the number of the one before it without looking back.
+ *
+ *  N-grams that were never counted are given the probability of one
+ *  hundredth of an occurrence, rather than zero, so that one unusual
+ *  n-gram does not outweigh the rest of a text.
+ *
+ *  A table is held either in memory or in a file mapped by NgramFile, as
+ *  floats or quantized to unsigned shorts counting steps above the
+ *  floor, so that large tables are built once and shared, read-only,
+ *  between processes through the page cache.
+ *  @author Evelyn Vo
+ */
+final class NgramTable {
+
+    /** A table of the n-grams of ORDER letters of ALPHABET, where
+     *  COUNTS[k] is the number of times the n-gram numbered K occurred in
+     *  some reference text. */
+    NgramTable(Alphabet alphabet, int order, long[] counts) {
+        _alphabet = alphabet;
+        _order = order;
+        _size = size(alphabet, order);
+        if (counts.length != _size) {
+            throw new EnigmaException("Expected " + _size + " n-gram "
+                                      + "counts, not " + counts.length + ".");
+        }
+        long total = 0;
+        for (long count : counts) {
+            if (count < 0) {
+                throw new EnigmaException("N-gram counts must not be "
+                                          + "negative.");
+            }
+            total += count;
+        }
+        if (total == 0) {
+            throw new EnigmaException("No n-grams were counted.");
+        }
+        double logTotal = Math.log10(total);
+        _floor = (float) (Math.log10(FLOOR) - logTotal);
+        float[] logProbabilities = new float[_size];
+        for (int ngram = 0; ngram < _size; ngram += 1) {
+            logProbabilities[ngram] = counts[ngram] == 0 ? _floor
+                : (float) (Math.log10(counts[ngram]) - logTotal);
+        }
+        _floats = FloatBuffer.wrap(logProbabilities);
+        _steps = null;
+        _step = 0;
+    }
+
+    /** A table of the n-grams of ORDER letters of ALPHABET whose
+     *  logarithms are FLOATS, or if that is null, FLOOR plus STEP times
+     *  the unsigned values of STEPS, and whose floor is FLOOR. The
+     *  entry of FLOATS or STEPS with index K is that of the n-gram
+     *  numbered K. */
+    NgramTable(Alphabet alphabet, int order, float floor, FloatBuffer floats,
+               ShortBuffer steps, float step) {
+        _alphabet = alphabet;
+        _order = order;
+        _size = size(alphabet, order);
+        if ((floats != null ? floats.limit() : steps.limit()) != _size) {
+            throw new EnigmaException("Expected " + _size + " n-gram "
+                                      + "logarithms.");
+        }
+        _floor = floor;
+        _floats = floats;
+        _steps = floats != null ? null : steps;
+        _step = step;
+    }
+
+    /** Returns the number of n-grams of ORDER letters of ALPHABET,
+     *  throwing an EnigmaException if there are too many to tabulate. */
+    private static int size(Alphabet alphabet, int order) {
+        if (order < 1) {
+            throw new EnigmaException("N-grams must have at least one "
+                                      + "letter.");
+        }
+        long size = 1;
+        for (int index = 0; index < order; index += 1) {
+            size *= alphabet.size();
+            if (size > MAX_SIZE) {
+                throw new EnigmaException("Too many n-grams of " + order
+                                          + " letters of " + alphabet.size()
+                                          + " to tabulate.");
+            }
+        }
+        return (int) size;
+    }
+
+    /** Returns the table of the n-grams of ORDER letters of ALPHABET
+     *  counted in the LEN letters of TEXT starting at OFF, each the index
+     *  of a letter of ALPHABET. */
+    static NgramTable train(Alphabet alphabet, int order, int[] text,
+                            int off, int len) {
+        long[] counts = new long[size(alphabet, order)];
+        int ngram = 0;
+        for (int index = 0; index < len; index += 1) {
+            ngram = next(ngram, text[off + index], alphabet.size(),
+                         counts.length);
+            if (index >= order - 1) {
+                counts[ngram] += 1;
+            }
+        }
+        return new NgramTable(alphabet, order, counts);
+    }
+
+    /** Returns the table of the n-grams of ORDER letters of ALPHABET
+     *  counted in the text read from CORPUS, which is read to its end but
+     *  not closed. Characters not in ALPHABET are skipped, as a machine
+     *  skips them, so that the letters either side of them form
+     *  n-grams. */
+    static NgramTable train(Alphabet alphabet, int order, Reader corpus)
+        throws IOException {
+        long[] counts = new long[size(alphabet, order)];
+        char[] buffer = new char[CORPUS_BUFFER_SIZE];
+        int ngram = 0;
+        long letters = 0;
+        int len;
+        while ((len = corpus.read(buffer)) != -1) {
+            for (int index = 0; index < len; index += 1) {
+                int letter = alphabet.toInt(buffer[index]);
+                if (letter == -1) {
+                    continue;
+                }
+                ngram = next(ngram, letter, alphabet.size(), counts.length);
+                letters += 1;
+                if (letters >= order) {
+                    counts[ngram] += 1;
+                }
+            }
+        }
+        return new NgramTable(alphabet, order, counts);
+    }
+
+    /** Returns my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Returns the number of letters in each of my n-grams. */
+    int order() {
+        return _order;
+    }
+
+    /** Returns the number of n-grams I hold. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the number of the n-gram that ends with LETTER and
+     *  otherwise ends the n-gram numbered NGRAM. */
+    int next(int ngram, int letter) {
+        return next(ngram, letter, _alphabet.size(), _size);
+    }
+
+    /** Returns the number of the n-gram that ends with LETTER and
+     *  otherwise ends the n-gram numbered NGRAM, where there are SIZE
+     *  n-grams of letters of an alphabet of N letters. */
+    private static int next(int ngram, int letter, int n, int size) {
+        return (int) (((long) ngram * n + letter) % size);
+    }
+
+    /** Returns the base-10 logarithm of the probability of the n-gram
+     *  numbered NGRAM. */
+    double logProbability(int ngram) {
+        if (_floats != null) {
+            return _floats.get(ngram);
+        }
+        return _floor + (_steps.get(ngram) & STEP_MASK) * _step;
+    }
+
+    /** Returns true iff my logarithms are quantized. */
+    boolean quantized() {
+        return _steps != null;
+    }
+
+    /** Returns the logarithm given to n-grams never counted. */
+    double floor() {
+        return _floor;
+    }
+
+    /** The number of occurrences of an n-gram never counted is taken to
+     *  be this. */
+    static final double FLOOR = 0.01;
+
+    /** The most n-grams a table may hold. */
+    static final int MAX_SIZE = 1 << 26;
+
+    /** The mask giving the unsigned value of a quantized logarithm. */
+    static final int STEP_MASK = 0xFFFF;
+
+    /** The number of characters of a corpus read at a time. */
+    private static final int CORPUS_BUFFER_SIZE = 1 << 16;
+
+    /** The alphabet of my n-grams. */
+    private final Alphabet _alphabet;
+
+    /** The letters in each n-gram. */
+    private final int _order;
+
+    /** The number of n-grams. */
+    private final int _size;
+
+    /** The logarithm of the probability of each n-gram, or null if they
+     *  are quantized. */
+    private final FloatBuffer _floats;
+
+    /** The logarithm of the probability of each n-gram, quantized as the
+     *  unsigned number of steps of size _step above _floor, or null if
+     *  they are not quantized. */
+    private final ShortBuffer _steps;
+
+    /** The size of a step of _steps. */
+    private final float _step;
+
+    /** The logarithm given to n-grams never counted. */
+    private final float _floor;
+
+}
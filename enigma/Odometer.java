@@ -0,0 +1,263 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The pawl and notch structure of a machine's rotor slots. Steps an
+ *  array of rotor positions one keystroke at a time, or jumps it ahead by
+ *  any number of keystrokes without replaying them.
+ *
+ *  Slot 0 holds the reflector and the last slot the fast rotor. The
+ *  rotors in slots J and to its right never depend on those to the left
+ *  of J, so while slot J is away from its notches nothing to its left
+ *  moves. seek exploits this: for each slot it works out, once per
+ *  distinct state of the slots to its right, how many keystrokes pass
+ *  before that slot next reaches a notch (a "run"), and then jumps whole
+ *  runs at the leftmost slot it can, descending one slot whenever the
+ *  remaining distance is shorter than a run. Only the keystrokes in which
+ *  some slot sits on a notch are stepped one at a time.
+ *  @author Evelyn Vo
+ */
+class Odometer {
+
+    /** An odometer for rotors over an alphabet of SIZE characters, where
+     *  ROTATES[i] is true iff the rotor in slot I rotates, and NOTCHES[i]
+     *  is the notch table of the rotor in slot I (true at each setting
+     *  that is a notch), or null if it has no notches. */
+    Odometer(int size, boolean[] rotates, boolean[][] notches) {
+        _size = size;
+        _last = rotates.length - 1;
+        _rotates = rotates.clone();
+        _notches = new boolean[rotates.length][];
+        _hasNotches = new boolean[rotates.length];
+        for (int slot = 0; slot <= _last; slot += 1) {
+            _notches[slot] = notches[slot] == null
+                ? new boolean[size] : notches[slot].clone();
+            for (boolean notch : _notches[slot]) {
+                _hasNotches[slot] |= notch;
+            }
+        }
+    }
+
+    /** Return the number of slots I step. */
+    int numSlots() {
+        return _last + 1;
+    }
+
+    /** Advances POS, the settings of my slots, by one keystroke. Slots are
+     *  visited from right to left, each seeing the positions its right
+     *  neighbors have already taken this keystroke; a slot at a notch
+     *  moves together with its left neighbor if that rotates, and any
+     *  other rotating slot moves if its right neighbor is at a notch. The
+     *  fast rotor moves last. */
+    void step(int[] pos) {
+        step(pos, -1);
+    }
+
+    /** Advances POS, the settings of my slots, by N >= 0 keystrokes, with
+     *  the same result as calling step(POS) N times. */
+    void seek(int[] pos, long n) {
+        if (n < 0) {
+            throw new EnigmaException("Cannot seek a negative number "
+                    + "of keystrokes.");
+        }
+        long remaining = n;
+        int floor = 1;
+        HashMap<Key, Long> seen = new HashMap<>();
+        while (remaining > 0) {
+            if (seen != null) {
+                Long earlier = seen.put(new Key(0, pos.clone()), remaining);
+                if (earlier != null) {
+                    remaining %= earlier - remaining;
+                    seen = null;
+                    continue;
+                } else if (seen.size() >= MAX_RUNS) {
+                    seen = null;
+                }
+            }
+            int slot = floor;
+            while (slot <= _last) {
+                if (_notches[slot][pos[slot]]) {
+                    if (!stuck(slot)) {
+                        break;
+                    }
+                } else {
+                    Run run = run(slot, pos);
+                    if (run.keystrokes < remaining) {
+                        System.arraycopy(run.after, 0, pos, slot,
+                                         run.after.length);
+                        remaining -= run.keystrokes;
+                        break;
+                    }
+                    floor = slot + 1;
+                }
+                slot += 1;
+            }
+            if (slot > _last) {
+                pos[_last] = (int) ((pos[_last] + remaining) % _size);
+                return;
+            }
+            step(pos);
+            remaining -= 1;
+        }
+    }
+
+    /** Advances POS by one keystroke, as for step(POS), and returns true
+     *  iff the rotor in slot WATCH moved onto a notch during it. A slot may
+     *  move twice in one keystroke, so this cannot be told from its
+     *  settings before and after. */
+    private boolean step(int[] pos, int watch) {
+        boolean landed = false;
+        for (int slot = _last - 1; slot >= 0; slot -= 1) {
+            if (_notches[slot][pos[slot]]) {
+                if (slot > 0 && _rotates[slot - 1]) {
+                    pos[slot] = next(pos[slot]);
+                    pos[slot - 1] = next(pos[slot - 1]);
+                    landed |= slot - 1 == watch
+                        && _notches[watch][pos[watch]];
+                }
+            } else if (_rotates[slot] && _notches[slot + 1][pos[slot + 1]]) {
+                pos[slot] = next(pos[slot]);
+                landed |= slot == watch && _notches[slot][pos[slot]];
+            }
+        }
+        pos[_last] = next(pos[_last]);
+        return landed;
+    }
+
+    /** Returns true iff the rotor in SLOT is at a notch that can never
+     *  carry, because its left neighbor does not rotate. Such a slot
+     *  moves only when its right neighbor carries into it. */
+    private boolean stuck(int slot) {
+        return slot == 0 || !_rotates[slot - 1];
+    }
+
+    /** Returns the run of SLOT from the settings POS, in which SLOT is not
+     *  at a notch: the number of keystrokes before the one in which SLOT
+     *  moves onto a notch, and the settings of SLOT and the slots to its
+     *  right after them. Runs are cached by those settings. */
+    private Run run(int slot, int[] pos) {
+        Key key = new Key(slot, Arrays.copyOfRange(pos, slot, _last + 1));
+        Run run = _runs.get(key);
+        if (run == null) {
+            run = computeRun(slot, pos);
+            if (_runs.size() >= MAX_RUNS) {
+                _runs.clear();
+            }
+            _runs.put(key, run);
+        }
+        return run;
+    }
+
+    /** Computes the run of SLOT from the settings POS (see run). */
+    private Run computeRun(int slot, int[] pos) {
+        if (!_rotates[slot] || !_hasNotches[slot]) {
+            return new Run(Long.MAX_VALUE, null);
+        }
+        if (slot == _last) {
+            int distance = 1;
+            while (!_notches[slot][(pos[slot] + distance) % _size]) {
+                distance += 1;
+            }
+            int[] after = { (pos[slot] + distance - 1) % _size };
+            return new Run(distance - 1, after);
+        }
+        int[] current = pos.clone();
+        int[] scratch = new int[current.length];
+        long keystrokes = 0;
+        while (true) {
+            if (!_notches[slot + 1][current[slot + 1]]) {
+                Run inner = run(slot + 1, current);
+                if (inner.after == null) {
+                    return new Run(Long.MAX_VALUE, null);
+                }
+                System.arraycopy(inner.after, 0, current, slot + 1,
+                                 inner.after.length);
+                keystrokes += inner.keystrokes;
+            }
+            System.arraycopy(current, 0, scratch, 0, current.length);
+            if (step(scratch, slot)) {
+                return new Run(keystrokes,
+                               Arrays.copyOfRange(current, slot, _last + 1));
+            }
+            System.arraycopy(scratch, 0, current, 0, current.length);
+            keystrokes += 1;
+        }
+    }
+
+    /** Returns the setting following P. */
+    private int next(int p) {
+        return p + 1 == _size ? 0 : p + 1;
+    }
+
+    /** The number of keystrokes in a run and the settings of its slot and
+     *  the slots to its right at its end. AFTER is null if the slot never
+     *  reaches a notch, in which case KEYSTROKES is Long.MAX_VALUE. */
+    private static final class Run {
+        /** A run of KEYSTROKES ending with settings AFTER. */
+        Run(long keystrokes, int[] after) {
+            this.keystrokes = keystrokes;
+            this.after = after;
+        }
+
+        /** The length of the run. */
+        private final long keystrokes;
+
+        /** The settings at the end of the run. */
+        private final int[] after;
+    }
+
+    /** A slot together with its settings and those to its right. */
+    private static final class Key {
+        /** The key for SLOT with settings TAIL. */
+        Key(int slot, int[] tail) {
+            _slot = slot;
+            _tail = tail;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _slot == other._slot && Arrays.equals(_tail, other._tail);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * _slot + Arrays.hashCode(_tail);
+        }
+
+        /** The slot. */
+        private final int _slot;
+
+        /** The settings of _slot and the slots to its right. */
+        private final int[] _tail;
+    }
+
+    /** Runs cached before the cache is cleared. */
+    private static final int MAX_RUNS = 1 << 16;
+
+    /** The size of the alphabet. */
+    private final int _size;
+
+    /** The slot of the fast rotor. */
+    private final int _last;
+
+    /** _rotates[i] is true iff the rotor in slot I rotates. */
+    private final boolean[] _rotates;
+
+    /** _notches[i][k] is true iff setting K of the rotor in slot I is a
+     *  notch. */
+    private final boolean[][] _notches;
+
+    /** _hasNotches[i] is true iff the rotor in slot I has any notch. */
+    private final boolean[] _hasNotches;
+
+    /** Cached runs, by slot and settings. */
+    private final ConcurrentHashMap<Key, Run> _runs =
+        new ConcurrentHashMap<>();
+
+}
@@ -0,0 +1,110 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Odometer class.
+ *  @author Evelyn Vo
+ */
+public class OdometerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Returns a notch table of SIZE settings with notches at NOTCHES. */
+    private boolean[] notches(int size, int... notches) {
+        boolean[] table = new boolean[size];
+        for (int notch : notches) {
+            table[notch] = true;
+        }
+        return table;
+    }
+
+    /** Checks that seeking ODO from each of STARTS agrees with stepping
+     *  it one keystroke at a time, at every distance up to LIMIT. TESTID
+     *  is used in error messages. */
+    private void checkSeek(String testId, Odometer odo, int limit,
+                           int[]... starts) {
+        for (int[] start : starts) {
+            int[] stepped = start.clone();
+            for (int n = 0; n <= limit; n += 1) {
+                int[] sought = start.clone();
+                odo.seek(sought, n);
+                assertArrayEquals(msg(testId, "wrong settings from %s at %d",
+                                      Arrays.toString(start), n),
+                                  stepped, sought);
+                odo.step(stepped);
+            }
+        }
+    }
+
+    /** Checks seek on the naval arrangement, including double steps of
+     *  the middle rotor and a reflector that does not rotate. */
+    @Test
+    public void testNavalSeek() {
+        boolean[] rotates = {false, false, true, true, true};
+        boolean[][] notchTables = {null, null, notches(26, 4),
+            notches(26, 21), notches(26, 9, 25)};
+        Odometer odo = new Odometer(26, rotates, notchTables);
+        checkSeek("naval", odo, 4000, new int[] {0, 0, 0, 0, 0},
+                  new int[] {0, 3, 4, 20, 8}, new int[] {0, 7, 3, 21, 25});
+    }
+
+    /** Checks seek where a slot can pass a notch twice in one keystroke
+     *  and where the leftmost rotor is held at its notch. */
+    @Test
+    public void testUnusualSeek() {
+        boolean[] rotates = {false, true, true, true, true, true};
+        boolean[][] notchTables = {null, notches(2, 0, 1), notches(2, 1),
+            notches(2, 0, 1), null, notches(2, 0, 1)};
+        checkSeek("two", new Odometer(2, rotates, notchTables), 400,
+                  new int[] {0, 1, 0, 1, 0, 0});
+        rotates = new boolean[] {false, true, true, true};
+        notchTables = new boolean[][] {null, notches(5, 2), notches(5, 0, 3),
+            notches(5, 1)};
+        checkSeek("held", new Odometer(5, rotates, notchTables), 2000,
+                  new int[] {0, 2, 0, 0}, new int[] {0, 1, 4, 4});
+    }
+
+    /** Checks that a seek many periods ahead lands where seeking the
+     *  remainder would. START is first stepped past any settings that
+     *  cannot recur. */
+    @Test
+    public void testLongSeek() {
+        boolean[] rotates = {false, true, true, true};
+        boolean[][] notchTables = {null, notches(26, 16), notches(26, 4),
+            notches(26, 21)};
+        Odometer odo = new Odometer(26, rotates, notchTables);
+        int[] start = {0, 3, 4, 20};
+        for (int n = 0; n < 26 * 26 * 26 * 26; n += 1) {
+            odo.step(start);
+        }
+        int[] period = start.clone();
+        long length = 0;
+        do {
+            odo.step(period);
+            length += 1;
+        } while (!Arrays.equals(start, period));
+        int[] far = start.clone();
+        odo.seek(far, 1_000_000_000_000L * length + 1234);
+        int[] near = start.clone();
+        odo.seek(near, 1234);
+        assertArrayEquals(near, far);
+    }
+
+    /** Checks that seeking backwards is rejected. */
+    @Test(expected = EnigmaException.class)
+    public void testNegativeSeek() {
+        new Odometer(26, new boolean[] {false, true},
+                     new boolean[][] {null, notches(26, 1)})
+            .seek(new int[2], -1);
+    }
+
+}
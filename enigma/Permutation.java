@@ -1,6 +1,7 @@
 package enigma;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
  *  to the characters of an alphabet.
@@ -53,23 +54,53 @@ class Permutation {
                 }
             }
         }
-        _permuted = new Alphabet(String.valueOf(permutedAlph));
-        _inverse = new Alphabet(String.valueOf(inverseAlph));
+        _forward = new int[alphabet.size()];
+        _inverse = new int[alphabet.size()];
+        for (int index = 0; index < _alphabet.size(); index += 1) {
+            _forward[index] = _alphabet.toInt(permutedAlph[index]);
+            _inverse[index] = _alphabet.toInt(inverseAlph[index]);
+        }
+    }
+
+    /** Set this Permutation to the one mapping each index K of ALPHABET to
+     *  FORWARD[K], which is kept rather than copied and must not be
+     *  modified afterwards. FORWARD must be a permutation of the indices
+     *  of ALPHABET. */
+    Permutation(int[] forward, Alphabet alphabet) {
+        if (forward.length != alphabet.size()) {
+            throw new EnigmaException("Permutation table does not match "
+                    + "its alphabet.");
+        }
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = new int[forward.length];
+        Arrays.fill(_inverse, -1);
+        for (int index = 0; index < forward.length; index += 1) {
+            int image = forward[index];
+            if (image < 0 || image >= forward.length
+                    || _inverse[image] != -1) {
+                throw new EnigmaException("Permutation table is not "
+                        + "a permutation.");
+            }
+            _inverse[image] = index;
+        }
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     private void addCycle(String cycle) {
         Permutation newPerm = new Permutation(_cycles.concat(cycle), _alphabet);
-        _permuted = newPerm._permuted;
+        _forward = newPerm._forward;
         _inverse = newPerm._inverse;
         _cycles = newPerm._cycles;
+        _permutedView = null;
+        _inverseView = null;
     }
 
     /** Tests if the provided cycles are in the correct form.
      * Cycles in the correct form must be a string in the
      * form "(cccc) (cc) ..." where the c's are characters in ALPHABET.
-     * Every letter in the alphabet must appear in CYCLES, and every parenthesis
+     * Every letter in CYCLES must be in the alphabet, and every parenthesis
      * must be closed correctly.
      * */
     private void testCycles(String cycles, Alphabet alphabet) {
@@ -86,6 +117,9 @@ class Permutation {
                     throw new EnigmaException("Duplicate chars in cycles.");
                 } else if (Character.isWhitespace(currLetter)) {
                     throw new EnigmaException("Can't have WS within a cycle.");
+                } else if (alphabet.toInt(currLetter) == -1) {
+                    throw new EnigmaException("Cycles contain a letter "
+                            + "not in the alphabet.");
                 } else {
                     letters.add(currLetter);
                 }
@@ -109,6 +143,9 @@ class Permutation {
 
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
+        if (p >= 0 && p < _forward.length) {
+            return p;
+        }
         int r = p % size();
         if (r < 0) {
             r += size();
@@ -125,34 +162,33 @@ class Permutation {
      *  alphabet size. In other words, the index of the NEW letter that
      *  the original letter is permuted to. */
     int permute(int p) {
-        int newIndex = wrap(p);
-        char permLetter = _permuted.toChar(newIndex);
-        return _alphabet.toInt(permLetter);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to C modulo the alphabet size. In other words, the index of
      *  the NEW letter that the original letter is permuted to. */
     int invert(int c) {
-        char invLetter = _inverse.toChar(wrap(c));
-        return _alphabet.toInt(invLetter);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
      *  in ALPHABET, and converting the result to a character of ALPHABET. */
     char permute(char p) {
-        if (!_permuted.contains(p)) {
+        int index = _alphabet.toInt(p);
+        if (index == -1) {
             throw new EnigmaException("Letter not in permuted alphabet.");
         }
-        return _permuted.toChar(_alphabet.toInt(p));
+        return _alphabet.toChar(_forward[index]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
     char invert(char c) {
-        if (!_inverse.contains(c)) {
+        int index = _alphabet.toInt(c);
+        if (index == -1) {
             throw new EnigmaException("Letter not in inverse alphabet.");
         }
-        return _inverse.toChar(_alphabet.toInt(c));
+        return _alphabet.toChar(_inverse[index]);
     }
 
     /** Returns whether this permutation contains a given letter.
@@ -169,42 +205,79 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        for (int index = 0; index < _alphabet.size(); index += 1) {
-            if (_alphabet.toChar(index) == _permuted.toChar(index)) {
+        for (int index = 0; index < _forward.length; index += 1) {
+            if (_forward[index] == index) {
                 return false;
             }
         }
         return true;
     }
 
+    /** Return the table mapping each index of my alphabet to the index it
+     *  is permuted to. The array is shared, not copied, and must not be
+     *  modified. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Return the table mapping each index of my alphabet to the index it
+     *  is inversely permuted to. The array is shared, not copied, and must
+     *  not be modified. */
+    int[] inverseTable() {
+        return _inverse;
+    }
+
     /** Return the permutation of the entire alphabet used
      * to initialize this Permutation. */
     Alphabet permutation() {
-        return _permuted;
+        if (_permutedView == null) {
+            _permutedView = new Alphabet(tableString(_forward));
+        }
+        return _permutedView;
     }
 
     /** Return the inverse permutation of the entire alphabet used
      *  to initialize this Permutation. */
     Alphabet inversePermutation() {
-        return _inverse;
+        if (_inverseView == null) {
+            _inverseView = new Alphabet(tableString(_inverse));
+        }
+        return _inverseView;
+    }
+
+    /** Returns the letters of my alphabet in the order given by TABLE. */
+    private String tableString(int[] table) {
+        char[] letters = new char[table.length];
+        for (int index = 0; index < table.length; index += 1) {
+            letters[index] = _alphabet.toChar(table[index]);
+        }
+        return String.valueOf(letters);
     }
 
     /** Returns a String representation of the permuted alphabet. */
     @Override
     public String toString() {
-        return _permuted.toString();
+        return tableString(_forward);
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** The permuted form of _alphabet. */
-    private Alphabet _permuted;
+    /** _forward[i] is the index that index I of _alphabet permutes to. */
+    private int[] _forward;
+
+    /** _inverse[i] is the index that index I of _alphabet inverts to. */
+    private int[] _inverse;
+
+    /** The permuted form of _alphabet, built from _forward on demand. */
+    private Alphabet _permutedView;
 
-    /** The inversely permuted form of _alphabet. */
-    private Alphabet _inverse;
+    /** The inversely permuted form of _alphabet, built from _inverse
+     *  on demand. */
+    private Alphabet _inverseView;
 
-    /** The cycles used to permute _alphabet. Each row is a cycle. */
+    /** The cycles used to permute _alphabet, or null if I was built from
+     *  a table. Each row is a cycle. */
     private String _cycles;
 
 }
@@ -0,0 +1,488 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** A hill-climbing search for the plugboard of a machine whose rotors and
+ *  settings are known, given a ciphertext. Its fitness is the index of
+ *  coincidence of the decryption, which is higher for natural language
+ *  than for random text, or, given an NgramTable, the log-likelihood of
+ *  the decryption under it (see TextScorer), which tells language from
+ *  noise in shorter messages.
+ *
+ *  With plugboard S, the Ith letter C of the ciphertext decrypts to
+ *  S(Z_I(S(C))), where Z_I is the permutation of the rotors alone at the
+ *  Ith keystroke. The Z_I are computed once for the message, and a
+ *  candidate change to the plugboard, which changes the partners of at
+ *  most four letters, is scored by decrypting again only the letters
+ *  that go into or come out of the rotors as one of those four. The
+ *  index of coincidence depends only on the letter counts of the
+ *  decryption, so the change in fitness is found from the change in the
+ *  counts of those letters, and the change in log-likelihood from the
+ *  n-grams that contain the letters that changed.
+ *
+ *  Each climb starts from a random plugboard and repeatedly makes the
+ *  first change that improves the fitness, changing a letter's partner
+ *  to another letter (unplugging the old partners of both) or unplugging
+ *  a pair, until none does. Climbs are independent, and run in parallel.
+ *  @author Evelyn Vo
+ */
+final class PlugboardSolver {
+
+    /** The best plugboard found by a solver. */
+    static final class Solution {
+
+        /** A solution with the plugboard cycles PLUGBOARD, whose decryption
+         *  has the fitness FITNESS. */
+        Solution(String plugboard, double fitness) {
+            _plugboard = plugboard;
+            _fitness = fitness;
+        }
+
+        /** Returns the plugboard as cycles, in the form taken by
+         *  Permutation, empty if no letters are plugged. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Returns the fitness of the decryption: its log-likelihood under
+         *  the solver's n-grams if it has any, and otherwise its index of
+         *  coincidence. */
+        double fitness() {
+            return _fitness;
+        }
+
+        @Override
+        public String toString() {
+            return _plugboard;
+        }
+
+        /** The plugboard cycles. */
+        private final String _plugboard;
+
+        /** The fitness of the decryption. */
+        private final double _fitness;
+    }
+
+    /** A solver for the plugboard of M, whose rotors are inserted and set
+     *  as they were at the start of CIPHERTEXT, and whose own plugboard is
+     *  ignored, scoring by the index of coincidence. Whitespace in
+     *  CIPHERTEXT is ignored. M is not changed. */
+    PlugboardSolver(Machine M, String ciphertext) {
+        this(M, ciphertext, null);
+    }
+
+    /** A solver as for PlugboardSolver(M, CIPHERTEXT), but scoring by the
+     *  log-likelihood under NGRAMS, which must be n-grams of the alphabet
+     *  of M, unless NGRAMS is null. */
+    PlugboardSolver(Machine M, String ciphertext, NgramTable ngrams) {
+        _alphabet = M.alphabet();
+        if (ngrams != null
+            && !ngrams.alphabet().toString().equals(_alphabet.toString())) {
+            throw new EnigmaException("The n-grams are of another "
+                                      + "alphabet.");
+        }
+        _ngrams = ngrams;
+        _cipher = _alphabet.toInts(ciphertext);
+        if (_cipher.length < 2) {
+            throw new EnigmaException("The ciphertext is too short.");
+        }
+        int n = _alphabet.size();
+        int length = _cipher.length;
+        MachineSpec spec = M.spec();
+        MachineState state = M.state();
+        _scramblers = new int[length * n];
+        int[] table = new int[n];
+        for (int index = 0; index < length; index += 1) {
+            spec.scrambler(state, table);
+            System.arraycopy(table, 0, _scramblers, index * n, n);
+        }
+        _byCipherStart = new int[n + 1];
+        _byCipher = new int[length];
+        group(_cipher, _byCipherStart, _byCipher);
+    }
+
+    /** Sorts the places in VALUES by their values, into ORDER, leaving the
+     *  places with value V in ORDER[START[v] ..  START[v + 1] - 1]. */
+    private static void group(int[] values, int[] start, int[] order) {
+        int n = start.length - 1;
+        int[] next = new int[n];
+        for (int value : values) {
+            next[value] += 1;
+        }
+        start[0] = 0;
+        for (int v = 0; v < n; v += 1) {
+            start[v + 1] = start[v] + next[v];
+            next[v] = start[v];
+        }
+        for (int index = 0; index < values.length; index += 1) {
+            order[next[values[index]]] = index;
+            next[values[index]] += 1;
+        }
+    }
+
+    /** Runs RESTARTS climbs, on the threads of POOL, the Kth from a
+     *  random plugboard seeded by SEED + K, and returns the best plugboard
+     *  found, the earliest climb's if several are equally good. With
+     *  n-grams, the plugboards the climbs end at are scored afresh by a
+     *  TextScorer. */
+    Solution solve(int restarts, ForkJoinPool pool, long seed) {
+        if (restarts < 1) {
+            throw new EnigmaException("Restarts must be positive.");
+        }
+        ArrayList<ForkJoinTask<Climber>> climbs = new ArrayList<>();
+        for (int restart = 0; restart < restarts; restart += 1) {
+            long climbSeed = seed + restart;
+            climbs.add(pool.submit(() -> {
+                Climber climber = new Climber(new Random(climbSeed));
+                climber.climb();
+                return climber;
+            }));
+        }
+        TextScorer scorer = _ngrams == null ? null
+            : new TextScorer(_alphabet, 0, _ngrams, null);
+        Climber best = null;
+        double bestFitness = 0;
+        for (ForkJoinTask<Climber> climb : climbs) {
+            Climber climber = climb.join();
+            double fitness = climber.fitness(scorer);
+            if (best == null || fitness > bestFitness) {
+                best = climber;
+                bestFitness = fitness;
+            }
+        }
+        return new Solution(best.cycles(), bestFitness);
+    }
+
+    /** One climb: a plugboard and the decryption it gives. */
+    private final class Climber {
+
+        /** A climber starting from a random plugboard chosen by RANDOM. */
+        Climber(Random random) {
+            int n = _alphabet.size();
+            int length = _cipher.length;
+            _plug = new int[n];
+            _trial = new int[n];
+            _counts = new int[n];
+            _diff = new int[n];
+            _touched = new int[n];
+            _byOutput = new int[length];
+            _byOutputStart = new int[n + 1];
+            _output = new int[length];
+            _plain = new int[length];
+            _trialPlain = new int[length];
+            _changedPlaces = new int[length];
+            _mark = new int[length];
+            _ends = new int[length];
+            int[] letters = new int[n];
+            for (int letter = 0; letter < n; letter += 1) {
+                _plug[letter] = letter;
+                letters[letter] = letter;
+            }
+            for (int index = n - 1; index > 0; index -= 1) {
+                int other = random.nextInt(index + 1);
+                int letter = letters[index];
+                letters[index] = letters[other];
+                letters[other] = letter;
+            }
+            int pairs = random.nextInt(n / 2 + 1);
+            for (int pair = 0; pair < pairs; pair += 1) {
+                _plug[letters[2 * pair]] = letters[2 * pair + 1];
+                _plug[letters[2 * pair + 1]] = letters[2 * pair];
+            }
+            System.arraycopy(_plug, 0, _trial, 0, n);
+            for (int index = 0; index < length; index += 1) {
+                _output[index] = _scramblers[index * n
+                                             + _plug[_cipher[index]]];
+                _plain[index] = _plug[_output[index]];
+                _score += _counts[_plain[index]];
+                _counts[_plain[index]] += 1;
+            }
+            _score *= 2;
+            group(_output, _byOutputStart, _byOutput);
+        }
+
+        /** Makes improving changes to my plugboard until there are
+         *  none. */
+        void climb() {
+            int n = _alphabet.size();
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int a = 0; a < n; a += 1) {
+                    for (int b = a + 1; b < n; b += 1) {
+                        if (tryChange(a, b)) {
+                            improved = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Tries pairing A with B, or unplugging them if they are paired,
+         *  and keeps the change iff it improves my score. Returns true iff
+         *  it does. */
+        boolean tryChange(int a, int b) {
+            int pa = _plug[a];
+            int pb = _plug[b];
+            _changed[0] = a;
+            _changed[1] = b;
+            _numChanged = 2;
+            if (pa == b) {
+                _trial[a] = a;
+                _trial[b] = b;
+            } else {
+                _trial[pa] = pa;
+                _trial[pb] = pb;
+                _trial[a] = b;
+                _trial[b] = a;
+                if (pa != a) {
+                    _changed[_numChanged] = pa;
+                    _numChanged += 1;
+                }
+                if (pb != b) {
+                    _changed[_numChanged] = pb;
+                    _numChanged += 1;
+                }
+            }
+            boolean better = decrypt(false) > MIN_GAIN;
+            if (better) {
+                decrypt(true);
+            }
+            for (int k = 0; k < _numChanged; k += 1) {
+                int letter = _changed[k];
+                if (better) {
+                    _plug[letter] = _trial[letter];
+                } else {
+                    _trial[letter] = _plug[letter];
+                }
+            }
+            if (better) {
+                group(_output, _byOutputStart, _byOutput);
+            }
+            return better;
+        }
+
+        /** Decrypts again, with the plugboard _trial, each letter that
+         *  goes into or comes out of the rotors as one of the letters in
+         *  _changed under _plug, and returns the change in my fitness.
+         *  Keeps the new decryption, and its score, iff KEEP. */
+        private double decrypt(boolean keep) {
+            int n = _alphabet.size();
+            _epoch += 1;
+            int touched = 0;
+            int changedPlaces = 0;
+            for (int c = 0; c < _numChanged; c += 1) {
+                int letter = _changed[c];
+                for (int side = 0; side < 2; side += 1) {
+                    int[] start = side == 0 ? _byCipherStart : _byOutputStart;
+                    int[] order = side == 0 ? _byCipher : _byOutput;
+                    for (int k = start[letter]; k < start[letter + 1];
+                         k += 1) {
+                        int index = order[k];
+                        if (_mark[index] == _epoch) {
+                            continue;
+                        }
+                        _mark[index] = _epoch;
+                        int output = _scramblers[index * n
+                                                 + _trial[_cipher[index]]];
+                        int plain = _trial[output];
+                        int old = _plain[index];
+                        if (keep) {
+                            _output[index] = output;
+                        }
+                        _trialPlain[index] = plain;
+                        if (plain != old) {
+                            _changedPlaces[changedPlaces] = index;
+                            changedPlaces += 1;
+                            touched = touch(old, -1, touched);
+                            touched = touch(plain, 1, touched);
+                        }
+                    }
+                }
+            }
+            long delta = 0;
+            for (int k = 0; k < touched; k += 1) {
+                int letter = _touched[k];
+                long count = _counts[letter];
+                long after = count + _diff[letter];
+                delta += after * (after - 1) - count * (count - 1);
+                if (keep) {
+                    _counts[letter] += _diff[letter];
+                }
+                _diff[letter] = 0;
+            }
+            double gain = _ngrams == null ? delta
+                : ngramGain(changedPlaces);
+            if (keep) {
+                _score += delta;
+                for (int k = 0; k < changedPlaces; k += 1) {
+                    int index = _changedPlaces[k];
+                    _plain[index] = _trialPlain[index];
+                }
+            }
+            return gain;
+        }
+
+        /** Returns the change in the log-likelihood of my decryption made
+         *  by decrypting the first CHANGEDPLACES places of _changedPlaces
+         *  as in _trialPlain: the change in the logarithm of each n-gram
+         *  that ends at or within an n-gram's length after one of them. */
+        private double ngramGain(int changedPlaces) {
+            int order = _ngrams.order();
+            int length = _plain.length;
+            double gain = 0;
+            for (int k = 0; k < changedPlaces; k += 1) {
+                int place = _changedPlaces[k];
+                int last = Math.min(place + order, length);
+                for (int end = Math.max(place, order - 1); end < last;
+                     end += 1) {
+                    if (_ends[end] == _epoch) {
+                        continue;
+                    }
+                    _ends[end] = _epoch;
+                    int before = 0;
+                    int after = 0;
+                    for (int at = end - order + 1; at <= end; at += 1) {
+                        before = _ngrams.next(before, _plain[at]);
+                        after = _ngrams.next(after, _mark[at] == _epoch
+                                             ? _trialPlain[at] : _plain[at]);
+                    }
+                    gain += _ngrams.logProbability(after)
+                        - _ngrams.logProbability(before);
+                }
+            }
+            return gain;
+        }
+
+        /** Returns the fitness of my decryption: its log-likelihood as
+         *  scored by SCORER, which it clears first, or its index of
+         *  coincidence if SCORER is null. */
+        double fitness(TextScorer scorer) {
+            long length = _plain.length;
+            if (scorer == null) {
+                return (double) _score / (length * (length - 1));
+            }
+            scorer.clear();
+            scorer.add(_plain, 0, _plain.length);
+            return scorer.logLikelihood();
+        }
+
+        /** Adds CHANGE to the change in the count of LETTER, recording
+         *  LETTER in _touched, of which the first TOUCHED are in use, if it
+         *  is not already there. Returns the new number in use. */
+        private int touch(int letter, int change, int touched) {
+            boolean seen = false;
+            for (int k = 0; k < touched && !seen; k += 1) {
+                seen = _touched[k] == letter;
+            }
+            _diff[letter] += change;
+            if (!seen) {
+                _touched[touched] = letter;
+                touched += 1;
+            }
+            return touched;
+        }
+
+        /** Returns my plugboard as cycles. */
+        String cycles() {
+            StringBuilder cycles = new StringBuilder();
+            for (int letter = 0; letter < _plug.length; letter += 1) {
+                if (letter < _plug[letter]) {
+                    if (cycles.length() > 0) {
+                        cycles.append(' ');
+                    }
+                    cycles.append('(').append(_alphabet.toChar(letter))
+                        .append(_alphabet.toChar(_plug[letter])).append(')');
+                }
+            }
+            return cycles.toString();
+        }
+
+        /** My plugboard: the partner of each letter. */
+        private final int[] _plug;
+
+        /** The plugboard being tried; equal to _plug between tries. */
+        private final int[] _trial;
+
+        /** The letters whose partners a try changes. */
+        private final int[] _changed = new int[4];
+
+        /** The number of letters in _changed. */
+        private int _numChanged;
+
+        /** The number of times each letter occurs in my decryption. */
+        private final int[] _counts;
+
+        /** The change in _counts a try would make. Zero between tries. */
+        private final int[] _diff;
+
+        /** The letters whose entries of _diff a try has changed. */
+        private final int[] _touched;
+
+        /** The letter each letter of the ciphertext comes out of the
+         *  rotors as. */
+        private final int[] _output;
+
+        /** The places of the ciphertext sorted by _output, grouped as
+         *  group leaves them. */
+        private final int[] _byOutput;
+
+        /** The start of each group of _byOutput. */
+        private final int[] _byOutputStart;
+
+        /** My decryption. */
+        private final int[] _plain;
+
+        /** The decryption the current try gives at each place it has
+         *  decrypted again. */
+        private final int[] _trialPlain;
+
+        /** The places whose decryption the current try changes. */
+        private final int[] _changedPlaces;
+
+        /** _mark[i] is _epoch iff place I has been decrypted again by the
+         *  current try. */
+        private final int[] _mark;
+
+        /** _ends[i] is _epoch iff the change in the n-gram ending at place
+         *  I has been counted by the current try. */
+        private final int[] _ends;
+
+        /** The number of the current try. */
+        private int _epoch;
+
+        /** The sum over letters of N(N - 1), where N is the number of times
+         *  the letter occurs in my decryption. */
+        private long _score;
+    }
+
+    /** The least gain in fitness for which a change is kept, so that
+     *  rounding cannot make both a change and its undoing look like
+     *  gains. */
+    private static final double MIN_GAIN = 1e-9;
+
+    /** The alphabet of the machine. */
+    private final Alphabet _alphabet;
+
+    /** The n-grams scored against, or null to score by the index of
+     *  coincidence. */
+    private final NgramTable _ngrams;
+
+    /** The letters of the ciphertext. */
+    private final int[] _cipher;
+
+    /** _scramblers[i * n + c] is the letter C goes to through the rotors
+     *  at the Ith keystroke, where N is the size of the alphabet. */
+    private final int[] _scramblers;
+
+    /** The places of the ciphertext sorted by letter. */
+    private final int[] _byCipher;
+
+    /** The start of each letter's places in _byCipher. */
+    private final int[] _byCipherStart;
+
+}
@@ -0,0 +1,155 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the PlugboardSolver class.
+ *  @author Evelyn Vo
+ */
+public class PlugboardSolverTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /** A plaintext long enough for its index of coincidence to tell
+     *  English from noise. */
+    private static final String PLAIN =
+        "IT WAS THE BEST OF TIMES IT WAS THE WORST OF TIMES IT WAS THE AGE "
+        + "OF WISDOM IT WAS THE AGE OF FOOLISHNESS IT WAS THE EPOCH OF "
+        + "BELIEF IT WAS THE EPOCH OF INCREDULITY IT WAS THE SEASON OF "
+        + "LIGHT IT WAS THE SEASON OF DARKNESS IT WAS THE SPRING OF HOPE IT "
+        + "WAS THE WINTER OF DESPAIR WE HAD EVERYTHING BEFORE US WE HAD "
+        + "NOTHING BEFORE US WE WERE ALL GOING DIRECT TO HEAVEN WE WERE ALL "
+        + "GOING DIRECT THE OTHER WAY IN SHORT THE PERIOD WAS SO FAR LIKE "
+        + "THE PRESENT PERIOD THAT SOME OF ITS NOISIEST AUTHORITIES INSISTED "
+        + "ON ITS BEING RECEIVED FOR GOOD OR FOR EVIL IN THE SUPERLATIVE "
+        + "DEGREE OF COMPARISON ONLY THERE WERE A KING WITH A LARGE JAW AND "
+        + "A QUEEN WITH A PLAIN FACE ON THE THRONE OF ENGLAND THERE WERE A "
+        + "KING WITH A LARGE JAW AND A QUEEN WITH A FAIR FACE ON THE THRONE "
+        + "OF FRANCE IN BOTH COUNTRIES IT WAS CLEARER THAN CRYSTAL TO THE "
+        + "LORDS OF THE STATE PRESERVES OF LOAVES AND FISHES THAT THINGS IN "
+        + "GENERAL WERE SETTLED FOR EVER";
+
+    /** Returns a machine with the naval rotors B, I, II and III inserted
+     *  in that order, at the settings SETTINGS. */
+    private Machine navalMachine(String settings) {
+        Machine M = TestUtils.navalMachine(4, "B", "I", "II", "III");
+        M.insertRotors(new String[] {"B", "I", "II", "III"});
+        M.setRotors(settings);
+        return M;
+    }
+
+    /** Returns the index of coincidence of the letters of TEXT. */
+    private static double indexOfCoincidence(String text) {
+        long[] counts = new long[26];
+        long length = 0;
+        for (char ch : text.toCharArray()) {
+            if (ch >= 'A' && ch <= 'Z') {
+                counts[ch - 'A'] += 1;
+                length += 1;
+            }
+        }
+        long sum = 0;
+        for (long count : counts) {
+            sum += count * (count - 1);
+        }
+        return (double) sum / (length * (length - 1));
+    }
+
+    /** Checks that the solver recovers a plugboard of ten pairs, on one
+     *  thread or several, and that its fitness is that of the
+     *  decryption. */
+    @Test
+    public void testSolve() {
+        String plugboard = "(AQ) (BW) (CE) (DR) (FT) (GY) (HU) (IZ) (JX) "
+            + "(KP)";
+        Machine M = navalMachine("XLE");
+        M.setPlugboard(new Permutation(plugboard, UPPER));
+        String cipher = M.convert(PLAIN);
+        for (int parallelism : new int[] {1, 4}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                PlugboardSolver solver =
+                    new PlugboardSolver(navalMachine("XLE"), cipher);
+                PlugboardSolver.Solution solution = solver.solve(32, pool, 1);
+                assertEquals(plugboard, solution.plugboard());
+                assertEquals(indexOfCoincidence(PLAIN), solution.fitness(),
+                             1e-12);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /** Checks that the solver recovers a plugboard scoring by trigrams
+     *  mapped from a table file, and that its fitness is the
+     *  log-likelihood of the plaintext. */
+    @Test
+    public void testSolveWithNgrams() throws IOException {
+        String plugboard = "(AQ) (BW) (CE) (DR) (FT) (GY) (HU) (IZ) (JX) "
+            + "(KP)";
+        Machine M = navalMachine("XLE");
+        M.setPlugboard(new Permutation(plugboard, UPPER));
+        String cipher = M.convert(PLAIN);
+        int[] plain = UPPER.toInts(PLAIN);
+        Path file = Files.createTempFile("enigma", ".ngrams");
+        try {
+            NgramFile.write(file, NgramTable.train(UPPER, 3, plain, 0,
+                                                   plain.length), true);
+            NgramTable trigrams = NgramFile.map(file);
+            PlugboardSolver.Solution solution =
+                new PlugboardSolver(navalMachine("XLE"), cipher, trigrams)
+                .solve(16, ForkJoinPool.commonPool(), 1);
+            assertEquals(plugboard, solution.plugboard());
+            TextScorer scorer = new TextScorer(UPPER, 0, trigrams, null);
+            scorer.add(plain, 0, plain.length);
+            assertEquals(scorer.logLikelihood(), solution.fitness(), 1e-9);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /** Checks that n-grams of another alphabet are refused. */
+    @Test(expected = EnigmaException.class)
+    public void testNgramsOfAnotherAlphabet() {
+        Alphabet abc = new Alphabet("ABC");
+        new PlugboardSolver(navalMachine("AAA"), PLAIN,
+                            NgramTable.train(abc, 2, new int[] {0, 1, 2},
+                                             0, 3));
+    }
+
+    /** Checks that the solver ignores the machine's own plugboard and
+     *  leaves its settings alone. */
+    @Test
+    public void testMachineUnchanged() {
+        Machine M = navalMachine("AAA");
+        String cipher = M.convert(PLAIN);
+        M = navalMachine("AAA");
+        M.setPlugboard(new Permutation("(AB) (CD)", UPPER));
+        PlugboardSolver.Solution solution =
+            new PlugboardSolver(M, cipher).solve(16,
+                                                 ForkJoinPool.commonPool(),
+                                                 0);
+        assertEquals("", solution.plugboard());
+        assertEquals("AAA", M.positionAt(0));
+    }
+
+    /** Checks that a ciphertext of fewer than two letters is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testTooShort() {
+        new PlugboardSolver(navalMachine("AAA"), "A ");
+    }
+
+}
@@ -23,6 +23,11 @@ class Reflector extends FixedRotor {
         return true;
     }
 
+    @Override
+    Reflector copy() {
+        return withTables(new Reflector(name(), permutation()));
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
@@ -69,8 +69,8 @@ class Rotor {
     void set(int posn) {
         if (posn < 0) {
             throw new EnigmaException("Can't have a negative rotor position.");
-        } else if (posn > _permutation.size()) {
-            String error = "Can't have a rotor posn be > permutation.size().";
+        } else if (posn >= _permutation.size()) {
+            String error = "Can't have a rotor posn be >= permutation.size().";
             throw new EnigmaException(error);
         }
         _currPos = posn;
@@ -93,11 +93,12 @@ class Rotor {
         if (p < 0 || p >= size()) {
             throw new EnigmaException("Invalid parameters for convertForward.");
         }
+        if (_forwardTables != null) {
+            return _forwardTables[_currPos][p];
+        }
         int contactEntered = p + setting();
         int contactExited = _permutation.permute(contactEntered);
-        int positionExited = wrap(contactExited - setting());
-        char transl = alphabet().toChar(positionExited);
-        return positionExited;
+        return wrap(contactExited - setting());
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -115,11 +116,57 @@ class Rotor {
         if (e < 0 || e >= size()) {
             throw new EnigmaException("Invalid params for convertBackward.");
         }
+        if (_backwardTables != null) {
+            return _backwardTables[_currPos][e];
+        }
         int contactEntered = e + setting();
         int contactExited = _permutation.invert(contactEntered);
-        int positionExited = wrap(contactExited - setting());
-        char transl = alphabet().toChar(positionExited);
-        return positionExited;
+        return wrap(contactExited - setting());
+    }
+
+    /** Precompute, for every setting K, the tables mapping each contact P
+     *  to (perm(P + K) - K) mod size() and its inverse, so that
+     *  convertForward and convertBackward become a single table lookup.
+     *  Costs compiledBytes(size()) bytes. Compiling twice does nothing. */
+    void compile() {
+        if (_forwardTables != null) {
+            return;
+        }
+        int n = size();
+        int[] forward = _permutation.forwardTable();
+        int[] inverse = _permutation.inverseTable();
+        int[][] forwardTables = new int[n][n];
+        int[][] backwardTables = new int[n][n];
+        for (int k = 0; k < n; k += 1) {
+            for (int p = 0; p < n; p += 1) {
+                forwardTables[k][p] = wrap(forward[wrap(p + k)] - k);
+                backwardTables[k][p] = wrap(inverse[wrap(p + k)] - k);
+            }
+        }
+        _forwardTables = forwardTables;
+        _backwardTables = backwardTables;
+    }
+
+    /** Return true iff compile() has been called on me. */
+    boolean compiled() {
+        return _forwardTables != null;
+    }
+
+    /** Return the number of bytes my compiled tables occupy, or 0 if I
+     *  have not been compiled. */
+    long tableBytes() {
+        if (_forwardTables == null) {
+            return 0;
+        }
+        return compiledBytes(size());
+    }
+
+    /** Return the approximate number of bytes that compiling a rotor over
+     *  an alphabet of SIZE characters costs: two SIZE x SIZE int tables
+     *  plus their row headers. */
+    static long compiledBytes(int size) {
+        long n = size;
+        return 2 * (n * n * Integer.BYTES + n * ROW_OVERHEAD);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
@@ -132,6 +179,21 @@ class Rotor {
     void advance() {
     }
 
+    /** Returns a new rotor like me at its 0 setting, sharing my
+     *  permutation and compiled tables, which never change. */
+    Rotor copy() {
+        return withTables(new Rotor(_name, _permutation));
+    }
+
+    /** Gives COPY, a new copy of me, my compiled tables, if I have any,
+     *  and returns it. */
+    <R extends Rotor> R withTables(R copy) {
+        Rotor rotor = copy;
+        rotor._forwardTables = _forwardTables;
+        rotor._backwardTables = _backwardTables;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -145,4 +207,16 @@ class Rotor {
 
     /** The current position of this rotor. */
     private int _currPos;
+
+    /** Approximate heap bytes taken by the header and reference of one
+     *  row of a compiled table. */
+    private static final int ROW_OVERHEAD = 24;
+
+    /** _forwardTables[k][p] is convertForward(p) at setting k, or null if
+     *  I have not been compiled. */
+    private int[][] _forwardTables;
+
+    /** _backwardTables[k][e] is convertBackward(e) at setting k, or null
+     *  if I have not been compiled. */
+    private int[][] _backwardTables;
 }
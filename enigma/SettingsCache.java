@@ -0,0 +1,75 @@
+package enigma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** The MachineSettings of the settings lines most recently used with one
+ *  machine, keyed by the normalized form of each line (see key), so that
+ *  a stream of messages switching among a few recurring settings lines
+ *  parses each line only once. Holds at most a fixed number of entries,
+ *  dropping the one least recently used to make room for another.
+ *  @author Evelyn Vo
+ */
+final class SettingsCache {
+
+    /** A cache holding at most CAPACITY > 0 settings. */
+    SettingsCache(int capacity) {
+        if (capacity < 1) {
+            throw new EnigmaException("Settings cache capacity must be "
+                                      + "positive.");
+        }
+        _capacity = capacity;
+        _entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<String, MachineSettings> eldest) {
+                return size() > _capacity;
+            }
+        };
+    }
+
+    /** Returns LINE with leading and trailing whitespace removed and each
+     *  run of whitespace within it replaced by one space. Two settings
+     *  lines set a machine up alike if they have the same key. */
+    static String key(String line) {
+        StringBuilder key = new StringBuilder(line.length());
+        boolean space = false;
+        for (int index = 0; index < line.length(); index += 1) {
+            char ch = line.charAt(index);
+            if (Character.isWhitespace(ch)) {
+                space = key.length() > 0;
+            } else {
+                if (space) {
+                    key.append(' ');
+                    space = false;
+                }
+                key.append(ch);
+            }
+        }
+        return key.toString();
+    }
+
+    /** Returns the settings cached under KEY, marking them most recently
+     *  used, or null if there are none. */
+    MachineSettings get(String key) {
+        return _entries.get(key);
+    }
+
+    /** Caches SETTINGS under KEY, dropping the least recently used
+     *  settings if I am full. */
+    void put(String key, MachineSettings settings) {
+        _entries.put(key, settings);
+    }
+
+    /** Returns the number of settings I hold. */
+    int size() {
+        return _entries.size();
+    }
+
+    /** The most settings I hold. */
+    private final int _capacity;
+
+    /** My settings, least recently used first. */
+    private final LinkedHashMap<String, MachineSettings> _entries;
+
+}
@@ -0,0 +1,69 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the SettingsCache class.
+ *  @author Evelyn Vo
+ */
+public class SettingsCacheTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Returns the settings of a machine with the naval rotors B, Beta
+     *  and I. */
+    private MachineSettings settings() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(NAVALA.get("B"),
+                                                      UPPER)));
+        rotors.add(new FixedRotor("Beta", new Permutation(NAVALA.get("Beta"),
+                                                          UPPER)));
+        rotors.add(new MovingRotor("I", new Permutation(NAVALA.get("I"),
+                                                        UPPER), "Q"));
+        Machine M = new Machine(UPPER, 3, 1, rotors);
+        M.insertRotors(new String[] {"B", "Beta", "I"});
+        return M.settings();
+    }
+
+    /** Checks that keys collapse whitespace. */
+    @Test
+    public void testKey() {
+        assertEquals("* B Beta I AA (AB)",
+                     SettingsCache.key("  *\tB  Beta I AA   (AB) \r"));
+        assertEquals("* B Beta I AA (AB)",
+                     SettingsCache.key("* B Beta I AA (AB)"));
+        assertEquals("", SettingsCache.key(" \t "));
+    }
+
+    /** Checks that the least recently used settings are dropped first. */
+    @Test
+    public void testEviction() {
+        SettingsCache cache = new SettingsCache(2);
+        MachineSettings a = settings();
+        MachineSettings b = settings();
+        MachineSettings c = settings();
+        cache.put("a", a);
+        cache.put("b", b);
+        assertSame(a, cache.get("a"));
+        cache.put("c", c);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertSame(a, cache.get("a"));
+        assertSame(c, cache.get("c"));
+    }
+
+    /** Checks that a cache must hold something. */
+    @Test(expected = EnigmaException.class)
+    public void testBadCapacity() {
+        new SettingsCache(0);
+    }
+
+}
@@ -1,5 +1,6 @@
 package enigma;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -39,6 +40,59 @@ class TestUtils {
                   + "(PW) (QZ) (SX) (UY)");
     }
 
+    /** The notches of the naval rotors that move, as in default.conf. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** The naval rotors most tests build their machines from. */
+    static final String[] NAVAL_ROTORS = {"B", "Beta", "I", "III", "IV"};
+
+    /** Returns new copies of the naval rotors NAMES, in that order. B and
+     *  C are reflectors, Beta and Gamma fixed rotors, and the others
+     *  moving rotors with their NAVAL_NOTCHES. */
+    static ArrayList<Rotor> navalRotors(String... names) {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (String name : names) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            if (name.equals("B") || name.equals("C")) {
+                rotors.add(new Reflector(name, perm));
+            } else if (name.equals("Beta") || name.equals("Gamma")) {
+                rotors.add(new FixedRotor(name, perm));
+            } else {
+                rotors.add(new MovingRotor(name, perm,
+                                           NAVAL_NOTCHES.get(name)));
+            }
+        }
+        return rotors;
+    }
+
+    /** Returns a machine with NUMROTORS slots and three pawls, made from
+     *  new copies of the naval rotors NAMES, with no rotors inserted. */
+    static Machine navalMachine(int numRotors, String... names) {
+        return new Machine(UPPER, numRotors, 3, navalRotors(names));
+    }
+
+    /** Returns PLAIN encrypted by a machine of the NAVAL_ROTORS, with the
+     *  rotors ROTORS inserted at SETTINGS and the plugboard cycles
+     *  PLUGBOARD. */
+    static String navalEncrypt(String[] rotors, String settings,
+                               String plugboard, String plain) {
+        Machine M = navalMachine(rotors.length, NAVAL_ROTORS);
+        M.insertRotors(rotors);
+        M.setRotors(settings);
+        M.setPlugboard(new Permutation(plugboard, UPPER));
+        return M.convert(plain);
+    }
+
     /** The mapping of the upper-case alphabet by NAVALA. */
     static final HashMap<String, String> NAVALA_MAP = new HashMap<>();
     static {
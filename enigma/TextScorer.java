@@ -0,0 +1,239 @@
+package enigma;
+
+/** Scores of a stream of letters, each the index of a letter of an
+ *  alphabet, as a machine converts them, for telling a likely decryption
+ *  from an unlikely one. A scorer gives the index of coincidence of its
+ *  letters, the chance that two of them picked at random are the same;
+ *  their log-likelihood under an NgramTable, the sum of the logarithms
+ *  of the probabilities of the n-grams they contain; and their
+ *  chi-squared statistic against expected letter frequencies.
+ *
+ *  A scorer either scores every letter it has been given or, with a
+ *  window, only the last so many, so that the letters of a long stream
+ *  may be scored at every place without starting again. Each letter
+ *  added updates the index of coincidence and the log-likelihood in
+ *  constant time, taking out the letter and n-gram that leave the
+ *  window, and the chi-squared statistic is found from the letter counts
+ *  when asked for. Nothing is allocated after construction.
+ *  @author Evelyn Vo
+ */
+final class TextScorer {
+
+    /** A scorer of letters of ALPHABET, scoring the last WINDOW letters,
+     *  or all of them if WINDOW is 0, against the n-grams NGRAMS, or none
+     *  if it is null, and the relative letter frequencies EXPECTED,
+     *  indexed by letter, or none if it is null. WINDOW must be at least
+     *  the order of NGRAMS, and each of EXPECTED positive. */
+    TextScorer(Alphabet alphabet, int window, NgramTable ngrams,
+               double[] expected) {
+        _size = alphabet.size();
+        if (window < 0) {
+            throw new EnigmaException("The window must not be negative.");
+        }
+        if (ngrams != null) {
+            if (!ngrams.alphabet().toString().equals(alphabet.toString())) {
+                throw new EnigmaException("The n-grams are of another "
+                                          + "alphabet.");
+            } else if (window != 0 && window < ngrams.order()) {
+                throw new EnigmaException("The window is shorter than an "
+                                          + "n-gram.");
+            }
+        }
+        _window = window == 0 ? null : new int[window];
+        _ngrams = ngrams;
+        _counts = new long[_size];
+        if (expected != null) {
+            if (expected.length != _size) {
+                throw new EnigmaException("Expected " + _size + " letter "
+                                          + "frequencies, not "
+                                          + expected.length + ".");
+            }
+            double total = 0;
+            for (double frequency : expected) {
+                if (!(frequency > 0)) {
+                    throw new EnigmaException("Letter frequencies must be "
+                                              + "positive.");
+                }
+                total += frequency;
+            }
+            _expected = new double[_size];
+            for (int letter = 0; letter < _size; letter += 1) {
+                _expected[letter] = expected[letter] / total;
+            }
+        } else {
+            _expected = null;
+        }
+    }
+
+    /** Returns the relative frequencies of the letters of an alphabet of
+     *  SIZE letters in the LEN letters of TEXT starting at OFF, each one
+     *  counted once more than it occurs, so that none is zero. */
+    static double[] frequencies(int size, int[] text, int off, int len) {
+        double[] frequencies = new double[size];
+        for (int letter = 0; letter < size; letter += 1) {
+            frequencies[letter] = 1.0 / (len + size);
+        }
+        for (int index = 0; index < len; index += 1) {
+            frequencies[text[off + index]] += 1.0 / (len + size);
+        }
+        return frequencies;
+    }
+
+    /** Adds LETTER to the letters scored, taking out the first of them
+     *  if my window is full. */
+    void add(int letter) {
+        if (letter < 0 || letter >= _size) {
+            throw new EnigmaException("Letter index " + letter
+                                      + " is out of range.");
+        }
+        if (_window != null && _length == _window.length) {
+            removeFirst();
+        }
+        if (_window != null) {
+            int last = _first + (int) _length;
+            _window[last < _window.length ? last : last - _window.length] =
+                letter;
+        }
+        _length += 1;
+        _coincidences += 2 * _counts[letter];
+        _counts[letter] += 1;
+        if (_ngrams != null) {
+            _last = _ngrams.next(_last, letter);
+            if (_length >= _ngrams.order()) {
+                _logLikelihood += _ngrams.logProbability(_last);
+                _numNgrams += 1;
+            }
+        }
+    }
+
+    /** Adds the LEN letters of LETTERS starting at OFF to the letters
+     *  scored, as add(int) adds each in turn. */
+    void add(int[] letters, int off, int len) {
+        for (int index = off; index < off + len; index += 1) {
+            add(letters[index]);
+        }
+    }
+
+    /** Takes out the first letter in my window, and the n-gram it
+     *  starts. */
+    private void removeFirst() {
+        int letter = _window[_first];
+        if (_ngrams != null && _length >= _ngrams.order()) {
+            int ngram = 0;
+            int place = _first;
+            for (int k = 0; k < _ngrams.order(); k += 1) {
+                ngram = _ngrams.next(ngram, _window[place]);
+                place = place + 1 == _window.length ? 0 : place + 1;
+            }
+            _logLikelihood -= _ngrams.logProbability(ngram);
+            _numNgrams -= 1;
+        }
+        _first = _first + 1 == _window.length ? 0 : _first + 1;
+        _length -= 1;
+        _counts[letter] -= 1;
+        _coincidences -= 2 * _counts[letter];
+    }
+
+    /** Forgets every letter scored. */
+    void clear() {
+        _first = 0;
+        _length = 0;
+        _coincidences = 0;
+        _last = 0;
+        _logLikelihood = 0;
+        _numNgrams = 0;
+        for (int letter = 0; letter < _size; letter += 1) {
+            _counts[letter] = 0;
+        }
+    }
+
+    /** Returns the number of letters scored. */
+    long length() {
+        return _length;
+    }
+
+    /** Returns the number of times LETTER occurs in the letters
+     *  scored. */
+    long count(int letter) {
+        return _counts[letter];
+    }
+
+    /** Returns the index of coincidence of the letters scored, or 0 if
+     *  there are fewer than two. */
+    double indexOfCoincidence() {
+        if (_length < 2) {
+            return 0;
+        }
+        return (double) _coincidences / (_length * (_length - 1));
+    }
+
+    /** Returns the log-likelihood of the letters scored under my
+     *  n-grams: the sum of the base-10 logarithms of the probabilities of
+     *  the n-grams they contain. */
+    double logLikelihood() {
+        if (_ngrams == null) {
+            throw new EnigmaException("No n-grams to score against.");
+        }
+        return _logLikelihood;
+    }
+
+    /** Returns the number of n-grams in the letters scored. */
+    long numNgrams() {
+        return _numNgrams;
+    }
+
+    /** Returns the chi-squared statistic of the counts of the letters
+     *  scored against my expected frequencies: the sum over letters of
+     *  (O - E)^2 / E, where O is the number of times the letter occurs and
+     *  E the number of times it is expected to. */
+    double chiSquared() {
+        if (_expected == null) {
+            throw new EnigmaException("No letter frequencies to score "
+                                      + "against.");
+        }
+        double chi = 0;
+        for (int letter = 0; letter < _size; letter += 1) {
+            double expected = _length * _expected[letter];
+            double difference = _counts[letter] - expected;
+            chi += expected == 0 ? 0 : difference * difference / expected;
+        }
+        return chi;
+    }
+
+    /** The size of the alphabet. */
+    private final int _size;
+
+    /** The letters in my window, starting at _first and wrapping around,
+     *  or null if I have no window. */
+    private final int[] _window;
+
+    /** The n-grams scored against, or null. */
+    private final NgramTable _ngrams;
+
+    /** The relative frequency expected of each letter, or null. */
+    private final double[] _expected;
+
+    /** The number of times each letter occurs in the letters scored. */
+    private final long[] _counts;
+
+    /** The place in _window of the first letter scored. */
+    private int _first;
+
+    /** The number of letters scored. */
+    private long _length;
+
+    /** The sum over letters of N(N - 1), where N is the letter's
+     *  count. */
+    private long _coincidences;
+
+    /** The number of the n-gram ending with the last letter scored. */
+    private int _last;
+
+    /** The sum of the logarithms of the probabilities of the n-grams
+     *  scored. */
+    private double _logLikelihood;
+
+    /** The number of n-grams scored. */
+    private long _numNgrams;
+
+}
@@ -0,0 +1,157 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the TextScorer and NgramTable
+ *  classes.
+ *  @author Evelyn Vo
+ */
+public class TextScorerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Returns the indices in UPPER of the letters of TEXT, ignoring all
+     *  else. */
+    private static int[] letters(String text) {
+        return text.chars().filter(ch -> ch >= 'A' && ch <= 'Z')
+            .map(ch -> ch - 'A').toArray();
+    }
+
+    /** Returns LEN random letters of an alphabet of SIZE letters chosen by
+     *  RANDOM, drawn mostly from its first few letters. */
+    private static int[] randomText(Random random, int size, int len) {
+        int[] text = new int[len];
+        for (int index = 0; index < len; index += 1) {
+            text[index] = random.nextInt(random.nextBoolean()
+                                         ? Math.min(4, size) : size);
+        }
+        return text;
+    }
+
+    /** Returns a scorer with no window of the LEN letters of TEXT
+     *  starting at OFF, scoring against NGRAMS and EXPECTED. */
+    private static TextScorer scoreAll(Alphabet alphabet, int[] text,
+                                       int off, int len, NgramTable ngrams,
+                                       double[] expected) {
+        TextScorer scorer = new TextScorer(alphabet, 0, ngrams, expected);
+        scorer.add(text, off, len);
+        return scorer;
+    }
+
+    /** Checks the index of coincidence and chi-squared statistic of a
+     *  short text against sums worked by hand. */
+    @Test
+    public void testWholeText() {
+        int[] text = letters("AABBBC");
+        double[] uniform = new double[26];
+        Arrays.fill(uniform, 1);
+        TextScorer scorer = scoreAll(UPPER, text, 0, text.length, null,
+                                     uniform);
+        assertEquals(6, scorer.length());
+        assertEquals(3, scorer.count(1));
+        assertEquals((2.0 + 6.0) / 30.0, scorer.indexOfCoincidence(), 1e-12);
+        double e = 6.0 / 26;
+        double chi = 23 * e + sq(2 - e) / e + sq(3 - e) / e + sq(1 - e) / e;
+        assertEquals(chi, scorer.chiSquared(), 1e-9);
+        scorer.clear();
+        assertEquals(0, scorer.length());
+        assertEquals(0, scorer.indexOfCoincidence(), 0);
+    }
+
+    /** Returns X squared. */
+    private static double sq(double x) {
+        return x * x;
+    }
+
+    /** Checks that scoring with a sliding window gives, at every place,
+     *  the scores of the letters in the window scored afresh, for
+     *  alphabets of several sizes and n-grams of several orders. */
+    @Test
+    public void testSlidingWindow() {
+        Random random = new Random(24);
+        Alphabet[] alphabets = {new Alphabet("XYZ"), UPPER, Alphabet.bytes()};
+        for (Alphabet alphabet : alphabets) {
+            int size = alphabet.size();
+            int[] text = randomText(random, size, 400);
+            for (int order = 1; order <= 4; order += 1) {
+                if (Math.pow(size, order) > 1 << 20) {
+                    continue;
+                }
+                NgramTable ngrams =
+                    NgramTable.train(alphabet, order, text, 0, 200);
+                double[] expected =
+                    TextScorer.frequencies(size, text, 0, 200);
+                int window = 37;
+                TextScorer sliding =
+                    new TextScorer(alphabet, window, ngrams, expected);
+                for (int index = 0; index < text.length; index += 1) {
+                    sliding.add(text[index]);
+                    int from = Math.max(0, index + 1 - window);
+                    TextScorer fresh = scoreAll(alphabet, text, from,
+                                                index + 1 - from, ngrams,
+                                                expected);
+                    assertEquals(fresh.length(), sliding.length());
+                    assertEquals(fresh.numNgrams(), sliding.numNgrams());
+                    assertEquals(fresh.indexOfCoincidence(),
+                                 sliding.indexOfCoincidence(), 1e-12);
+                    assertEquals(fresh.logLikelihood(),
+                                 sliding.logLikelihood(), 1e-6);
+                    assertEquals(fresh.chiSquared(), sliding.chiSquared(),
+                                 1e-6);
+                }
+            }
+        }
+    }
+
+    /** Checks that n-grams are numbered and weighed as NgramTable says,
+     *  and that English scores better than its encryption. */
+    @Test
+    public void testNgrams() {
+        int[] text = letters("THE CAT SAT ON THE MAT THEN THE HAT");
+        NgramTable trigrams = NgramTable.train(UPPER, 3, text, 0,
+                                               text.length);
+        assertEquals(26 * 26 * 26, trigrams.size());
+        int the = trigrams.next(trigrams.next(trigrams.next(0, 19), 7), 4);
+        assertEquals((19 * 26 + 7) * 26 + 4, the);
+        assertEquals(Math.log10(4.0 / (text.length - 2)),
+                     trigrams.logProbability(the), 1e-6);
+        assertEquals(Math.log10(NgramTable.FLOOR / (text.length - 2)),
+                     trigrams.logProbability(0), 1e-6);
+        int[] other = letters("ZQX JKV");
+        assertTrue(scoreAll(UPPER, text, 0, 6, trigrams, null)
+                   .logLikelihood()
+                   > scoreAll(UPPER, other, 0, 6, trigrams, null)
+                   .logLikelihood());
+    }
+
+    /** Checks that a letter outside the alphabet is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testBadLetter() {
+        new TextScorer(new Alphabet("ABC"), 0, null, null).add(3);
+    }
+
+    /** Checks that a window too short for an n-gram is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testShortWindow() {
+        int[] text = {0, 1, 2, 0};
+        Alphabet abc = new Alphabet("ABC");
+        new TextScorer(abc, 2, NgramTable.train(abc, 3, text, 0, 4), null);
+    }
+
+    /** Checks that a table too large to hold is refused. */
+    @Test(expected = EnigmaException.class)
+    public void testTableTooLarge() {
+        NgramTable.train(Alphabet.bytes(), 4, new int[] {0, 0, 0, 0}, 0, 4);
+    }
+
+}
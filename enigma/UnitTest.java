@@ -10,9 +10,26 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(PermutationTest.class,
+        System.exit(textui.runClasses(AlphabetTest.class,
+                                      PermutationTest.class,
                                       MovingRotorTest.class,
+                                      OdometerTest.class,
+                                      MappedFileTest.class,
+                                      GroupWriterTest.class,
                                       MachineTest.class,
+                                      MachineSpecTest.class,
+                                      MachineSnapshotTest.class,
+                                      ConfigParserTest.class,
+                                      SettingsCacheTest.class,
+                                      EnigmaStreamTest.class,
+                                      EnigmaProcessorTest.class,
+                                      KeySearchTest.class,
+                                      BombeTest.class,
+                                      PlugboardSolverTest.class,
+                                      TextScorerTest.class,
+                                      NgramFileTest.class,
+                                      LatencyHistogramTest.class,
+                                      EnigmaDaemonTest.class,
                                       MainTest.class));
     }
 